@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes the configuration and the csv files which are used by the
+ * benchmarks into a temporary directory.
+ *
+ * @author Christian Beikov
+ */
+public final class BenchmarkData {
+
+    public static final int PRODUCTS = 2000;
+    public static final int ORDER_LINES = 20000;
+    public static final int CUSTOMERS = 10000;
+
+    private BenchmarkData() {
+    }
+
+    public static File createDirectory() throws IOException {
+        File dir = File.createTempFile("blaze-data-benchmark", "");
+
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+
+        write(new File(dir, "config.xml"), configuration());
+        write(new File(dir, "Product.csv"), products());
+        write(new File(dir, "OrderLine.csv"), orderLines());
+        write(new File(dir, "Customer.csv"), customers());
+        return dir;
+    }
+
+    public static void delete(File dir) {
+        if (dir != null) {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+
+            dir.delete();
+        }
+    }
+
+    public static String productName(int i) {
+        return "Product " + i;
+    }
+
+    private static String configuration() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<dataConfig packageName=\"com.blazebit.data.benchmark.model\" dateFormat=\"dd.MM.yyyy\" calendarFormat=\"dd.MM.yyyy HH:mm:ss\">\n"
+            + "    <dataClass name=\"Product\">\n"
+            + "        <dataProperty name=\"name\"/>\n"
+            + "    </dataClass>\n"
+            + "    <dataClass name=\"OrderLine\">\n"
+            + "        <dataProperty name=\"product\">\n"
+            + "            <dataLookup from=\"Product\">\n"
+            + "                <dataLookupBy name=\"name\"/>\n"
+            + "            </dataLookup>\n"
+            + "        </dataProperty>\n"
+            + "    </dataClass>\n"
+            + "</dataConfig>\n";
+    }
+
+    private static String products() {
+        StringBuilder sb = new StringBuilder("name;price\n");
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            sb.append(productName(i)).append(';').append(i % 100).append('.').append(i % 10).append("9\n");
+        }
+
+        return sb.toString();
+    }
+
+    private static String orderLines() {
+        StringBuilder sb = new StringBuilder("product;quantity;created\n");
+
+        for (int i = 0; i < ORDER_LINES; i++) {
+            sb.append(productName((i * 7) % PRODUCTS)).append(';').append(i % 50 + 1).append(";24.12.2011 ").append(10 + i % 10).append(":30:00\n");
+        }
+
+        return sb.toString();
+    }
+
+    private static String customers() {
+        StringBuilder sb = new StringBuilder("name;email;address\n");
+
+        for (int i = 0; i < CUSTOMERS; i++) {
+            sb.append("Customer ").append(i).append(";customer").append(i).append("@example.com;")
+                .append("{street: Main Street ").append(i).append(", zip: ").append(1000 + i % 9000).append(", city: Vienna, ")
+                .append("phones: {{number: 0664").append(i).append("}, {number: 0676").append(i).append("}}}\n");
+        }
+
+        return sb.toString();
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark;
+
+import com.blazebit.data.importer.DataProvider;
+import com.blazebit.data.importer.provider.CsvDataProvider;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures reading and parsing csv records with simple and nested complex
+ * values. One operation is one record.
+ *
+ * @author Christian Beikov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvDataProviderBenchmark {
+
+    private File dir;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = BenchmarkData.createDirectory();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.CUSTOMERS)
+    public void next(Blackhole blackhole) throws IOException {
+        CsvDataProvider provider = new CsvDataProvider(new File(dir, "Customer.csv"));
+
+        try {
+            DataProvider.Entry entry;
+
+            while ((entry = provider.next()) != null) {
+                blackhole.consume(entry);
+            }
+        } finally {
+            provider.close();
+        }
+    }
+}
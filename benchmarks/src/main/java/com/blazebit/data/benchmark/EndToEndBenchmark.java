@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark;
+
+import com.blazebit.data.cfg.Configuration;
+import com.blazebit.data.importer.DataProvider;
+import com.blazebit.data.importer.GenericDataImporter;
+import com.blazebit.data.importer.ImportStatistics;
+import com.blazebit.data.importer.provider.CsvDataProvider;
+import com.blazebit.data.importer.storage.JPADataStorage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a complete import of products and order lines from csv files into
+ * an in-memory H2 database. Every import runs in its own transaction which is
+ * rolled back. One operation is one row.
+ *
+ * @author Christian Beikov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private File dir;
+    private Configuration config;
+    private EntityManagerFactory emf;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = BenchmarkData.createDirectory();
+        config = new Configuration(new File(dir, "config.xml"));
+        emf = Persistence.createEntityManagerFactory("benchmark");
+    }
+
+    @TearDown
+    public void tearDown() {
+        emf.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.PRODUCTS + BenchmarkData.ORDER_LINES)
+    public Map<DataProvider, ImportStatistics> importCsv() throws Exception {
+        EntityManager em = emf.createEntityManager();
+        CsvDataProvider products = new CsvDataProvider(new File(dir, "Product.csv"));
+        CsvDataProvider orderLines = new CsvDataProvider(new File(dir, "OrderLine.csv"));
+        em.getTransaction().begin();
+
+        try {
+            JPADataStorage storage = new JPADataStorage(em);
+            GenericDataImporter importer = new GenericDataImporter(storage, config);
+            importer.add(products);
+            importer.add(orderLines);
+            Map<DataProvider, ImportStatistics> statistics = importer.generateObjects();
+            storage.flush();
+            return statistics;
+        } finally {
+            em.getTransaction().rollback();
+            em.close();
+            products.close();
+            orderLines.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark;
+
+import com.blazebit.data.importer.DataProvider;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides already parsed entries, so the parsing is not part of a benchmark.
+ *
+ * @author Christian Beikov
+ */
+public class ListDataProvider implements DataProvider {
+
+    private final String simpleClassName;
+    private final String[] fieldNames;
+    private final Iterator<DataProvider.Entry> iterator;
+
+    public ListDataProvider(String simpleClassName, String[] fieldNames, List<DataProvider.Entry> entries) {
+        this.simpleClassName = simpleClassName;
+        this.fieldNames = fieldNames;
+        this.iterator = entries.iterator();
+    }
+
+    @Override
+    public String getSimpleClassName() {
+        return simpleClassName;
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public DataProvider.Entry next() {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    public static class SimpleEntry implements DataProvider.Entry {
+
+        private final Map<String, String> simpleFields;
+
+        public SimpleEntry(Map<String, String> simpleFields) {
+            this.simpleFields = simpleFields;
+        }
+
+        @Override
+        public Map<String, String> getSimpleFields() {
+            return simpleFields;
+        }
+
+        @Override
+        public Map<String, Collection<DataProvider.Entry>> getComplexFields() {
+            return Collections.emptyMap();
+        }
+    }
+}
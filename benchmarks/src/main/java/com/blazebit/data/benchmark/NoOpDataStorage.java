@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark;
+
+import com.blazebit.data.benchmark.model.OrderLine;
+import com.blazebit.data.benchmark.model.Product;
+import com.blazebit.data.importer.DataStorage;
+import com.blazebit.data.importer.EntityMetadata;
+import com.blazebit.data.importer.metrics.ImportMetrics;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A datastorage which only knows a fixed set of products and discards saved
+ * objects, so populating the objects can be measured without a database.
+ *
+ * @author Christian Beikov
+ */
+public class NoOpDataStorage implements DataStorage {
+
+    private final Map<String, Product> products = new HashMap<String, Product>();
+    private final Map<Class, EntityMetadata> metadata = new HashMap<Class, EntityMetadata>();
+
+    public NoOpDataStorage() {
+        for (int i = 0; i < BenchmarkData.PRODUCTS; i++) {
+            Product p = new Product();
+            p.setId(Long.valueOf(i + 1));
+            p.setName(BenchmarkData.productName(i));
+            products.put(p.getName(), p);
+        }
+
+        metadata.put(Product.class, new EntityMetadata(Product.class, Long.class, "id", null, Collections.<String, Class>emptyMap()));
+        metadata.put(OrderLine.class, new EntityMetadata(OrderLine.class, Long.class, "id", null, Collections.<String, Class>singletonMap("product", Product.class)));
+    }
+
+    @Override
+    public Serializable getById(Class clazz, Serializable id) {
+        return null;
+    }
+
+    @Override
+    public Serializable getByField(Class clazz, String fieldName, Serializable fieldValue) {
+        return products.get(fieldValue);
+    }
+
+    @Override
+    public Serializable getByFields(Class clazz, Map<String, Serializable> valueMap) {
+        return products.get(valueMap.get("name"));
+    }
+
+    @Override
+    public List<Serializable> getListByField(Class clazz, String fieldName, Serializable fieldValue) {
+        List<Serializable> result = new ArrayList<Serializable>();
+
+        if (fieldValue instanceof Collection) {
+            for (Object value : (Collection) fieldValue) {
+                Product p = products.get(value);
+
+                if (p != null) {
+                    result.add(p);
+                }
+            }
+        } else if (products.containsKey(fieldValue)) {
+            result.add(products.get(fieldValue));
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<Serializable> getListByFields(Class clazz, Map<String, Serializable> valueMap) {
+        return getListByField(clazz, "name", valueMap.get("name"));
+    }
+
+    @Override
+    public Class getIdentifierType(Class clazz) {
+        return Long.class;
+    }
+
+    @Override
+    public EntityMetadata getMetadata(Class clazz) {
+        return metadata.get(clazz);
+    }
+
+    @Override
+    public Serializable saveObject(Serializable object) {
+        return object;
+    }
+
+    @Override
+    public Serializable getIdentifier(Serializable object) {
+        return null;
+    }
+
+    @Override
+    public Serializable getReference(Class clazz, Serializable id) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public boolean isManaged(Class clazz) {
+        return metadata.containsKey(clazz);
+    }
+
+    @Override
+    public void setMetrics(ImportMetrics metrics) {
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark;
+
+import com.blazebit.data.cfg.Configuration;
+import com.blazebit.data.importer.DataProvider;
+import com.blazebit.data.importer.GenericDataImporter;
+import com.blazebit.data.importer.ImportStatistics;
+import com.blazebit.data.importer.LookupCache;
+import com.blazebit.data.importer.provider.CsvDataProvider;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures populating objects from already parsed entries, including the
+ * lookups, against a datastorage which does no work. One operation is one
+ * entry.
+ *
+ * @author Christian Beikov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PopulateBenchmark {
+
+    @Param({"true", "false"})
+    private boolean lookupCache;
+    private File dir;
+    private Configuration config;
+    private NoOpDataStorage storage;
+    private String[] fieldNames;
+    private List<DataProvider.Entry> orderLines;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = BenchmarkData.createDirectory();
+        config = new Configuration(new File(dir, "config.xml"));
+        storage = new NoOpDataStorage();
+        orderLines = new ArrayList<DataProvider.Entry>(BenchmarkData.ORDER_LINES);
+        CsvDataProvider provider = new CsvDataProvider(new File(dir, "OrderLine.csv"));
+
+        try {
+            fieldNames = provider.getFieldNames();
+            DataProvider.Entry entry;
+
+            while ((entry = provider.next()) != null) {
+                orderLines.add(entry);
+            }
+        } finally {
+            provider.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.ORDER_LINES)
+    public Map<DataProvider, ImportStatistics> populate() throws Exception {
+        GenericDataImporter importer = new GenericDataImporter(storage, config);
+        importer.setLookupCache(lookupCache ? new LookupCache() : null);
+        importer.add(new ListDataProvider("Product", new String[]{"name", "price"}, Collections.<DataProvider.Entry>emptyList()));
+        importer.add(new ListDataProvider("OrderLine", fieldNames, orderLines));
+        return importer.generateObjects();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark;
+
+import com.blazebit.data.benchmark.model.Product;
+import com.blazebit.data.importer.storage.JPADataStorage;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures saving objects with the JPA datastorage into an in-memory H2
+ * database. Every iteration runs in its own transaction which is rolled back.
+ *
+ * @author Christian Beikov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SaveObjectBenchmark {
+
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private JPADataStorage storage;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        emf = Persistence.createEntityManagerFactory("benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        emf.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        em = emf.createEntityManager();
+        em.getTransaction().begin();
+        storage = new JPADataStorage(em);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        storage.flush();
+        em.getTransaction().rollback();
+        em.close();
+    }
+
+    @Benchmark
+    public Serializable saveObject() {
+        Product product = new Product();
+        product.setName("Saved " + counter++);
+        product.setPrice(BigDecimal.ONE);
+        return storage.saveObject(product);
+    }
+}
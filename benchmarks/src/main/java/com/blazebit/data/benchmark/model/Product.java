@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.benchmark.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+@Entity
+public class Product implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private Long id;
+    private String name;
+    private BigDecimal price;
+
+    @Id
+    @GeneratedValue
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    @Column(unique = true, nullable = false)
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+}
@@ -6,12 +6,15 @@ package com.blazebit.data.cfg;
 import com.blazebit.data.exporter.DataExporter;
 import com.blazebit.data.importer.DataImporter;
 import com.blazebit.data.importer.DataStorage;
+import com.blazebit.data.importer.DuplicatePolicy;
+import com.blazebit.data.importer.ErrorPolicy;
 import com.blazebit.data.importer.GenericDataImporter;
 import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
@@ -29,11 +32,27 @@ public class Configuration{
     private String packageName;
     private Map<String, Map<String, DataProperty>> dataClasses = new HashMap<String, Map<String, DataProperty>>();
     private Map<String, String[]> dataDependencies = new HashMap<String, String[]>();
+    // The policies and natural keys are read by the workers of a parallel import
+    private Map<String, ErrorPolicy> errorPolicies = new ConcurrentHashMap<String, ErrorPolicy>();
+    private Map<String, String[]> naturalKeys = new ConcurrentHashMap<String, String[]>();
+    private Map<String, DuplicatePolicy> duplicatePolicies = new ConcurrentHashMap<String, DuplicatePolicy>();
     
     public Configuration(File configFile){
         this.configFile = configFile;
     }
     
+    public String getDatePattern(){
+        return getDataImport().getDateFormat();
+    }
+    
+    public String getCalendarPattern(){
+        return getDataImport().getCalendarFormat();
+    }
+    
+    /**
+     * Returns the format for dates. The format is not thread safe, use
+     * {@link #getDatePattern()} to create formats for multiple threads.
+     */
     public DateFormat getDateFormat(){
         if(dateFormat == null){
             dateFormat = new SimpleDateFormat(getDataImport().getDateFormat());
@@ -42,6 +61,10 @@ public class Configuration{
         return dateFormat;
     }
     
+    /**
+     * Returns the format for calendars. The format is not thread safe, use
+     * {@link #getCalendarPattern()} to create formats for multiple threads.
+     */
     public DateFormat getCalendarFormat(){
         if(calendarFormat == null){
             calendarFormat = new SimpleDateFormat(getDataImport().getCalendarFormat());
@@ -96,6 +119,97 @@ public class Configuration{
         return dependencies;
     }
     
+    /**
+     * Returns the error policy of the data class. The attribute onError is
+     * either abort or skip, maxErrors limits the number of skipped rows.
+     * 
+     * @return The error policy or null if none is configured
+     */
+    public ErrorPolicy getErrorPolicy(Class<?> clazz) {
+        ErrorPolicy policy = errorPolicies.get(clazz.getSimpleName());
+        
+        if(policy != null){
+            return policy;
+        }
+        
+        for(DataClass dc : getDataImport().getDataClass()){
+            if(dc.getName().equals(clazz.getSimpleName())){
+                if("skip".equals(dc.getOnError())){
+                    policy = dc.getMaxErrors() == null ? ErrorPolicy.SKIP : ErrorPolicy.skip(dc.getMaxErrors());
+                }else if("abort".equals(dc.getOnError())){
+                    policy = ErrorPolicy.ABORT;
+                }else if(dc.getOnError() != null){
+                    throw new ConfigurationException("Invalid onError value " + dc.getOnError() + " for the data class " + dc.getName());
+                }
+                break;
+            }
+        }
+        
+        // Classes without a policy are looked up again, the map can't hold null
+        if(policy != null){
+            errorPolicies.put(clazz.getSimpleName(), policy);
+        }
+        return policy;
+    }
+    
+    /**
+     * Returns the names of the fields of the natural key of the data class.
+     * 
+     * @return The field names, empty if no natural key is defined
+     */
+    public String[] getNaturalKey(Class<?> clazz) {
+        String[] naturalKey = naturalKeys.get(clazz.getSimpleName());
+        
+        if(naturalKey == null){
+            naturalKey = new String[0];
+            for(DataClass dc : getDataImport().getDataClass()){
+                if(dc.getName().equals(clazz.getSimpleName())){
+                    if(dc.getNaturalKey() != null){
+                        naturalKey = dc.getNaturalKey().split(",");
+                        
+                        for(int i = 0; i < naturalKey.length; i++){
+                            naturalKey[i] = naturalKey[i].trim();
+                        }
+                    }
+                    break;
+                }
+            }
+            naturalKeys.put(clazz.getSimpleName(), naturalKey);
+        }
+        
+        return naturalKey;
+    }
+    
+    /**
+     * Returns the policy for duplicates of the natural key of the data class.
+     * The attribute onDuplicate is either skip, merge or reject, which is the
+     * default.
+     * 
+     * @throws ConfigurationException if the attribute has an invalid value
+     */
+    public DuplicatePolicy getDuplicatePolicy(Class<?> clazz) {
+        DuplicatePolicy policy = duplicatePolicies.get(clazz.getSimpleName());
+        
+        if(policy == null){
+            policy = DuplicatePolicy.REJECT;
+            for(DataClass dc : getDataImport().getDataClass()){
+                if(dc.getName().equals(clazz.getSimpleName())){
+                    if("skip".equals(dc.getOnDuplicate())){
+                        policy = DuplicatePolicy.SKIP;
+                    }else if("merge".equals(dc.getOnDuplicate())){
+                        policy = DuplicatePolicy.MERGE;
+                    }else if(dc.getOnDuplicate() != null && !"reject".equals(dc.getOnDuplicate())){
+                        throw new ConfigurationException("Invalid onDuplicate value " + dc.getOnDuplicate() + " for the data class " + dc.getName());
+                    }
+                    break;
+                }
+            }
+            duplicatePolicies.put(clazz.getSimpleName(), policy);
+        }
+        
+        return policy;
+    }
+    
     public DataImporter buildImporter(DataStorage ds){
         return new GenericDataImporter(ds, this);
     }
@@ -104,7 +218,7 @@ public class Configuration{
         throw new UnsupportedOperationException("Not yet implemented");
     }
     
-    protected DataConfig getDataImport(){
+    protected synchronized DataConfig getDataImport(){
         if(dataImport == null){
             try {
                 JAXBContext jc = JAXBContext.newInstance("com.blazebit.data.cfg");
@@ -58,6 +58,18 @@ public class DataClass {
     @XmlJavaTypeAdapter(CollapsedStringAdapter.class)
     @XmlSchemaType(name = "NCName")
     protected String dependsOn;
+    @XmlAttribute(required = false)
+    @XmlJavaTypeAdapter(CollapsedStringAdapter.class)
+    @XmlSchemaType(name = "NCName")
+    protected String onError;
+    @XmlAttribute(required = false)
+    protected Integer maxErrors;
+    @XmlAttribute(required = false)
+    protected String naturalKey;
+    @XmlAttribute(required = false)
+    @XmlJavaTypeAdapter(CollapsedStringAdapter.class)
+    @XmlSchemaType(name = "NCName")
+    protected String onDuplicate;
 
     /**
      * Gets the value of the dataProperty property.
@@ -119,6 +131,73 @@ public class DataClass {
     public void setDependsOn(String dependsOn) {
         this.dependsOn = dependsOn;
     }
+
+    /**
+     * Gets the value of the onError property, which is either abort or skip.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getOnError() {
+        return onError;
+    }
+
+    public void setOnError(String onError) {
+        this.onError = onError;
+    }
+
+    /**
+     * Gets the number of rows which may be skipped before the import is
+     * aborted, null means unlimited.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getMaxErrors() {
+        return maxErrors;
+    }
+
+    public void setMaxErrors(Integer maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Gets the comma separated names of the fields which identify a row, so
+     * duplicate rows can be detected.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getNaturalKey() {
+        return naturalKey;
+    }
+
+    public void setNaturalKey(String naturalKey) {
+        this.naturalKey = naturalKey;
+    }
+
+    /**
+     * Gets the value of the onDuplicate property, which is either skip, merge
+     * or reject.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getOnDuplicate() {
+        return onDuplicate;
+    }
+
+    public void setOnDuplicate(String onDuplicate) {
+        this.onDuplicate = onDuplicate;
+    }
     
     
 
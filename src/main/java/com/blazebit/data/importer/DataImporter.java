@@ -3,7 +3,6 @@
  */
 package com.blazebit.data.importer;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -25,19 +24,22 @@ public interface DataImporter {
      * Generates the objects for all dataproviders and puts the object into the
      * datastorage.
      * 
-     * @return The List of the generated objects mapped to their dataproviders.
+     * The generated objects are not retained, use an {@link ImportListener}
+     * to process them while the import is running.
+     * 
+     * @return The statistics of the import mapped to their dataproviders.
      * @throws GeneratorException 
      */
-    public Map<DataProvider, List> generateObjects() throws DataImporterException;
+    public Map<DataProvider, ImportStatistics> generateObjects() throws DataImporterException;
 
     /**
      * Generates the objects for the specified class and their dependencies. The
      * dataprovider for the dependencies must be present.
      * 
      * @param clazz The class for which the object should be generated
-     * @return The List of the generated objects mapped to their dataproviders.
+     * @return The statistics of the import mapped to their dataproviders.
      * @throws GeneratorException 
      */
-    public Map<DataProvider, List> generateObjects(Class clazz) throws DataImporterException;
+    public Map<DataProvider, ImportStatistics> generateObjects(Class clazz) throws DataImporterException;
 
 }
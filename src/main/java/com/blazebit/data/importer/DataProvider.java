@@ -65,4 +65,17 @@ public interface DataProvider {
          */
         Map<String, Collection<DataProvider.Entry>> getComplexFields();
     }
+    
+    /**
+     * An entry which also provides the record from which it was parsed. The
+     * record is used to report entries which could not be imported.
+     */
+    interface RawEntry extends Entry{
+        /**
+         * Returns the record as it was read from the source.
+         * 
+         * @return The raw record or null if it is not available
+         */
+        String getRawRecord();
+    }
 }
@@ -3,6 +3,7 @@
  */
 package com.blazebit.data.importer;
 
+import com.blazebit.data.importer.metrics.ImportMetrics;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,15 @@ public interface DataStorage {
      */
     public Class getIdentifierType(Class clazz);
 
+    /**
+     * Returns the metadata of a class within the datastorage. The metadata
+     * is computed once, so this method can be used for every object.
+     * 
+     * @param clazz The class of which the metadata should be returned.
+     * @return The metadata or null if the class is not managed
+     */
+    public EntityMetadata getMetadata(Class clazz);
+
     /**
      * Persists the given object in the datastorage.
      * 
@@ -56,6 +66,26 @@ public interface DataStorage {
      */
     public Serializable saveObject(Serializable object);
 
+    /**
+     * Returns the identifier of the object.
+     * 
+     * @param object The object of a managed class.
+     * @return The identifier or null if the object has none
+     */
+    public Serializable getIdentifier(Serializable object);
+
+    /**
+     * Returns a reference to the object of the given class with the given
+     * identifier, which can be assigned to other objects. In contrast to
+     * {@link #getById(Class, Serializable)} the state of the object may be
+     * loaded lazily and the datastorage is not flushed.
+     * 
+     * @param clazz The class of the object.
+     * @param id The identifier of the object.
+     * @return The reference
+     */
+    public Serializable getReference(Class clazz, Serializable id);
+
     /**
      * Closes the datastorage
      * 
@@ -66,6 +96,20 @@ public interface DataStorage {
      * Manual flush the datastorage
      */
     public void flush();
+
+    /**
+     * Writes the pending changes, commits the current transaction and
+     * begins a new one, so an import can be committed in chunks. Objects
+     * which were loaded or saved before may be detached afterwards.
+     */
+    public void commit();
     
     public boolean isManaged(Class clazz);
+
+    /**
+     * Sets the metrics to which the datastorage reports its flushes.
+     * 
+     * @param metrics The metrics, never null.
+     */
+    public void setMetrics(ImportMetrics metrics);
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+/**
+ * A datastorage factory creates datastorages for the workers of a parallel
+ * import. Every worker gets its own datastorage, so the datastorages don't
+ * have to be thread safe.
+ *
+ * @author Christian Beikov
+ */
+public interface DataStorageFactory {
+
+    /**
+     * Creates a new datastorage which is used by a single worker.
+     * 
+     * @return The new datastorage
+     */
+    public DataStorage createDataStorage();
+
+    /**
+     * Releases a datastorage after the worker is done with it. The changes of
+     * a successful worker must be visible to the datastorages created
+     * afterwards, since workers of the next dependency level will look up the
+     * generated objects.
+     * 
+     * @param storage The datastorage which was created by this factory.
+     * @param successful True if the worker finished successfully, false if it failed.
+     */
+    public void releaseDataStorage(DataStorage storage, boolean successful);
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dependency graph of the classes which are generated by the importer. A
+ * class depends on another class when the objects of the other class have to
+ * be generated first. The order of the graph is deterministic, classes
+ * without a dependency between each other are ordered in the order in which
+ * they were added.
+ *
+ * @author Christian Beikov
+ */
+final class DependencyGraph {
+
+    private final Map<Class, Set<Class>> dependencies = new LinkedHashMap<Class, Set<Class>>();
+
+    /**
+     * Adds the given class to the graph if it is not already contained.
+     *
+     * @param clazz The class to add.
+     */
+    public void addNode(Class clazz) {
+        if (!dependencies.containsKey(clazz)) {
+            dependencies.put(clazz, new LinkedHashSet<Class>());
+        }
+    }
+
+    public boolean containsNode(Class clazz) {
+        return dependencies.containsKey(clazz);
+    }
+
+    /**
+     * Adds a dependency from <code>clazz</code> to <code>dependsOn</code>. Both
+     * classes are added to the graph if necessary. Dependencies of a class on
+     * itself are recursive associations and are ignored.
+     *
+     * @param clazz The dependent class.
+     * @param dependsOn The class which has to be generated first.
+     */
+    public void addDependency(Class clazz, Class dependsOn) {
+        addNode(clazz);
+        addNode(dependsOn);
+
+        if (!clazz.equals(dependsOn)) {
+            dependencies.get(clazz).add(dependsOn);
+        }
+    }
+
+    /**
+     * Adds a dependency like {@link #addDependency(Class, Class)} but only if
+     * the dependency would not introduce a cycle.
+     *
+     * @param clazz The dependent class.
+     * @param dependsOn The class which should be generated first.
+     * @return True if the dependency was added, false if it was skipped
+     */
+    public boolean addDependencyIfAcyclic(Class clazz, Class dependsOn) {
+        if (!clazz.equals(dependsOn) && dependencies.containsKey(dependsOn) && reaches(dependsOn, clazz)) {
+            return false;
+        }
+
+        addDependency(clazz, dependsOn);
+        return true;
+    }
+
+    /**
+     * Returns the direct dependencies of the given class.
+     *
+     * @param clazz The class of which the dependencies should be returned.
+     * @return The direct dependencies
+     */
+    public Set<Class> getDependencies(Class clazz) {
+        Set<Class> deps = dependencies.get(clazz);
+        return deps == null ? Collections.<Class>emptySet() : Collections.unmodifiableSet(deps);
+    }
+
+    /**
+     * Returns the graph which only contains the given class and its transitive
+     * dependencies.
+     *
+     * @param clazz The root class of the subgraph.
+     * @return The subgraph
+     */
+    public DependencyGraph getSubgraph(Class clazz) {
+        Set<Class> reachable = new HashSet<Class>();
+        collect(clazz, reachable);
+        DependencyGraph subgraph = new DependencyGraph();
+
+        for (Map.Entry<Class, Set<Class>> entry : dependencies.entrySet()) {
+            if (reachable.contains(entry.getKey())) {
+                subgraph.addNode(entry.getKey());
+
+                for (Class dependsOn : entry.getValue()) {
+                    subgraph.addDependency(entry.getKey(), dependsOn);
+                }
+            }
+        }
+
+        return subgraph;
+    }
+
+    /**
+     * Returns all classes in an order in which every class comes after the
+     * classes it depends on.
+     *
+     * @return The classes in topological order
+     * @throws DataDependencyException Is thrown when the graph contains a cycle.
+     */
+    public List<Class> getTopologicalOrder() throws DataDependencyException {
+        List<Class> order = new ArrayList<Class>(dependencies.size());
+
+        for (List<Class> level : getLevels()) {
+            order.addAll(level);
+        }
+
+        return order;
+    }
+
+    /**
+     * Groups the classes into levels. The classes of a level only depend on
+     * classes of previous levels, so the classes within a level are
+     * independent of each other.
+     *
+     * @return The levels of the graph
+     * @throws DataDependencyException Is thrown when the graph contains a cycle.
+     */
+    public List<List<Class>> getLevels() throws DataDependencyException {
+        Set<Class> resolvedClasses = new HashSet<Class>();
+        List<List<Class>> levels = new ArrayList<List<Class>>();
+        Set<Class> remaining = new LinkedHashSet<Class>(dependencies.keySet());
+
+        while (!remaining.isEmpty()) {
+            List<Class> level = new ArrayList<Class>();
+
+            for (Class clazz : remaining) {
+                boolean resolved = true;
+
+                for (Class dependsOn : dependencies.get(clazz)) {
+                    if (!resolvedClasses.contains(dependsOn)) {
+                        resolved = false;
+                        break;
+                    }
+                }
+
+                if (resolved) {
+                    level.add(clazz);
+                }
+            }
+
+            if (level.isEmpty()) {
+                throw new DataDependencyException("Cyclic dependency detected: " + findCycle(remaining));
+            }
+
+            resolvedClasses.addAll(level);
+            remaining.removeAll(level);
+            levels.add(level);
+        }
+
+        return levels;
+    }
+
+    private boolean reaches(Class from, Class to) {
+        Set<Class> visited = new HashSet<Class>();
+        List<Class> stack = new ArrayList<Class>();
+        stack.add(from);
+
+        while (!stack.isEmpty()) {
+            Class current = stack.remove(stack.size() - 1);
+
+            if (current.equals(to)) {
+                return true;
+            }
+            if (visited.add(current)) {
+                stack.addAll(getDependencies(current));
+            }
+        }
+
+        return false;
+    }
+
+    private void collect(Class clazz, Set<Class> reachable) {
+        if (reachable.add(clazz)) {
+            for (Class dependsOn : getDependencies(clazz)) {
+                collect(dependsOn, reachable);
+            }
+        }
+    }
+
+    private String findCycle(Set<Class> candidates) {
+        for (Class start : candidates) {
+            List<Class> path = new ArrayList<Class>();
+
+            if (findCycle(start, start, path, new HashSet<Class>())) {
+                StringBuilder sb = new StringBuilder(start.getSimpleName());
+
+                for (Class c : path) {
+                    sb.append(" -> ").append(c.getSimpleName());
+                }
+
+                return sb.toString();
+            }
+        }
+
+        return candidates.toString();
+    }
+
+    private boolean findCycle(Class start, Class current, List<Class> path, Set<Class> visited) {
+        for (Class dependsOn : getDependencies(current)) {
+            path.add(dependsOn);
+
+            if (dependsOn.equals(start)) {
+                return true;
+            }
+            if (visited.add(dependsOn) && findCycle(start, dependsOn, path, visited)) {
+                return true;
+            }
+
+            path.remove(path.size() - 1);
+        }
+
+        return false;
+    }
+}
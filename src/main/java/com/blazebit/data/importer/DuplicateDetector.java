@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import com.blazebit.data.importer.accessor.PropertyAccessor;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Detects objects with the same natural key. Only a 64 bit hash of the key
+ * values is remembered per object, so very rarely two different keys are
+ * taken as duplicates and the importer has to confirm a duplicate with the
+ * datastorage. Managed objects in the key are compared by their
+ * identifiers, since different instances may represent the same object.
+ * Managed objects without an identifier are compared by identity.
+ *
+ * @author Christian Beikov
+ */
+class DuplicateDetector {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private final PropertyAccessor[] accessors;
+    private final DataStorage storage;
+    private final LongHashSet hashes;
+
+    /**
+     * Creates a detector for the given natural key.
+     *
+     * @param accessors The accessors of the natural key fields.
+     * @param storage The datastorage which manages the objects in the key.
+     * @param offHeap True to keep the hashes outside of the heap.
+     */
+    public DuplicateDetector(Collection<PropertyAccessor> accessors, DataStorage storage, boolean offHeap) {
+        this.accessors = accessors.toArray(new PropertyAccessor[accessors.size()]);
+        this.storage = storage;
+        this.hashes = new LongHashSet(INITIAL_CAPACITY, offHeap);
+    }
+
+    /**
+     * Remembers the natural key of the object.
+     *
+     * @return True if no object with the same natural key was added before
+     */
+    public boolean add(Object object) {
+        long h = 0xcbf29ce484222325L;
+
+        for (PropertyAccessor accessor : accessors) {
+            h = (h ^ hash(accessor.get(object))) * 0x100000001b3L;
+            h ^= h >>> 29;
+        }
+
+        return hashes.add(h == 0 ? 1 : h);
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+
+    private long hash(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            String s = (String) value;
+            long h = 0xcbf29ce484222325L;
+
+            for (int i = 0; i < s.length(); i++) {
+                h = (h ^ s.charAt(i)) * 0x100000001b3L;
+            }
+
+            return h;
+        }
+        if (value instanceof BigDecimal) {
+            // hashCode only has 32 bits and differs for 1.0 and 1.00
+            BigDecimal d = (BigDecimal) value;
+            return hash(d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString());
+        }
+        if (value instanceof BigInteger) {
+            return hash(value.toString());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return Double.doubleToLongBits(((Number) value).doubleValue());
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Calendar) {
+            return ((Calendar) value).getTimeInMillis();
+        }
+        if (isManaged(value.getClass())) {
+            Serializable id = storage.getIdentifier((Serializable) value);
+            return id == null ? System.identityHashCode(value) : hash(id);
+        }
+
+        return value.hashCode();
+    }
+
+    /**
+     * Proxies subclass the managed class, so the superclasses are checked too.
+     */
+    private boolean isManaged(Class clazz) {
+        for (; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (storage.isManaged(clazz)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+/**
+ * Decides what happens with a row which has the same natural key as a row
+ * which was imported before.
+ *
+ * @author Christian Beikov
+ */
+public enum DuplicatePolicy {
+
+    /**
+     * Drops the duplicate row.
+     */
+    SKIP,
+    /**
+     * Copies the values of the duplicate row onto the object which was
+     * imported before and saves it, so the values of the last row win.
+     */
+    MERGE,
+    /**
+     * Hands the duplicate row to the reject sink.
+     */
+    REJECT;
+}
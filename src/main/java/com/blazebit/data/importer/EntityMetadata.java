@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The facts about a class managed by a datastorage which the importer needs
+ * while generating objects. Datastorages compute the metadata once, so asking
+ * for it is cheap.
+ *
+ * @author Christian Beikov
+ */
+public class EntityMetadata {
+
+    private final Class entityClass;
+    private final Class identifierType;
+    private final String identifierName;
+    private final String versionName;
+    private final Map<String, Class> associations;
+
+    /**
+     * Creates the metadata of a managed class.
+     * 
+     * @param entityClass The managed class.
+     * @param identifierType The type of the identifier.
+     * @param identifierName The name of the identifier attribute or null for composite identifiers.
+     * @param versionName The name of the version attribute or null.
+     * @param associations The associated classes by the names of the association attributes, the element classes for collections.
+     */
+    public EntityMetadata(Class entityClass, Class identifierType, String identifierName, String versionName, Map<String, Class> associations) {
+        this.entityClass = entityClass;
+        this.identifierType = identifierType;
+        this.identifierName = identifierName;
+        this.versionName = versionName;
+        this.associations = Collections.unmodifiableMap(new LinkedHashMap<String, Class>(associations));
+    }
+
+    public Class getEntityClass() {
+        return entityClass;
+    }
+
+    public Class getIdentifierType() {
+        return identifierType;
+    }
+
+    public String getIdentifierName() {
+        return identifierName;
+    }
+
+    public String getVersionName() {
+        return versionName;
+    }
+
+    /**
+     * Returns the associated classes by the names of the association
+     * attributes. For collections the class of the elements is returned.
+     * 
+     * @return The associations
+     */
+    public Map<String, Class> getAssociations() {
+        return associations;
+    }
+
+    public boolean isAssociation(String attributeName) {
+        return associations.containsKey(attributeName);
+    }
+
+    @Override
+    public String toString() {
+        return "EntityMetadata[" + entityClass.getName() + ", id=" + identifierName + ", version=" + versionName + ", associations=" + associations.keySet() + "]";
+    }
+}
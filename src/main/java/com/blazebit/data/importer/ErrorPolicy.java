@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+/**
+ * Decides whether a row which could not be populated aborts the import or is
+ * rejected and skipped.
+ *
+ * @author Christian Beikov
+ */
+public final class ErrorPolicy {
+
+    /**
+     * Aborts the import on the first error.
+     */
+    public static final ErrorPolicy ABORT = new ErrorPolicy(0);
+    /**
+     * Rejects every row which could not be populated.
+     */
+    public static final ErrorPolicy SKIP = new ErrorPolicy(-1);
+    private final long maxErrors;
+
+    private ErrorPolicy(long maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Returns a policy which rejects rows until the given number of errors is
+     * exceeded and aborts the import then.
+     * 
+     * @param maxErrors The number of rows which may be rejected.
+     * @return The error policy
+     */
+    public static ErrorPolicy skip(long maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Invalid maximum errors: " + maxErrors);
+        }
+
+        return maxErrors == 0 ? ABORT : new ErrorPolicy(maxErrors);
+    }
+
+    /**
+     * Returns the number of rows which may be rejected.
+     * 
+     * @return The number of rows, -1 if unlimited
+     */
+    public long getMaxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * Returns whether the row with the given error may be rejected.
+     * 
+     * @param errors The number of errors including the current one.
+     * @return True if the row is rejected, false if the import is aborted
+     */
+    public boolean isRejected(long errors) {
+        return maxErrors < 0 || errors <= maxErrors;
+    }
+
+    @Override
+    public String toString() {
+        return maxErrors == 0 ? "abort" : maxErrors < 0 ? "skip" : "skip after " + maxErrors;
+    }
+}
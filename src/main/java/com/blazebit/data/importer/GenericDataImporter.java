@@ -6,24 +6,36 @@ package com.blazebit.data.importer;
 import com.blazebit.reflection.ExpressionUtils;
 import com.blazebit.reflection.LazyGetterMethod;
 import com.blazebit.reflection.LazySetterMethod;
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
-import java.text.DateFormat;
+import java.math.BigDecimal;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import com.blazebit.data.cfg.Configuration;
@@ -31,8 +43,21 @@ import com.blazebit.data.cfg.DataLookup;
 import com.blazebit.data.cfg.DataLookupBy;
 import com.blazebit.data.cfg.DataProperty;
 import com.blazebit.data.importer.DataProvider.Entry;
+import com.blazebit.data.importer.accessor.PropertyAccessor;
+import com.blazebit.data.importer.accessor.PropertyAccessorFactory;
+import com.blazebit.data.importer.accessor.ReflectionPropertyAccessorFactory;
+import com.blazebit.data.importer.checkpoint.CheckpointStore;
+import com.blazebit.data.importer.checkpoint.ImportCheckpoint;
+import com.blazebit.data.importer.converter.BooleanConverter;
+import com.blazebit.data.importer.converter.IntegerConverter;
+import com.blazebit.data.importer.converter.LongConverter;
+import com.blazebit.data.importer.converter.ValueConverter;
+import com.blazebit.data.importer.converter.ValueConverterRegistry;
+import com.blazebit.data.importer.metrics.ImportMetrics;
+import com.blazebit.data.importer.metrics.InMemoryImportMetrics;
+import com.blazebit.data.importer.reject.RejectSink;
+import com.blazebit.data.importer.reject.RejectedRow;
 import com.blazebit.reflection.ReflectionUtils;
-import com.blazebit.text.FormatUtils;
 import java.util.logging.Logger;
 
 /**
@@ -42,18 +67,59 @@ import java.util.logging.Logger;
 public class GenericDataImporter implements DataImporter {
 
     private static final Logger log = Logger.getLogger(GenericDataImporter.class.getName());
-    private static final boolean DEBUG = false;
+    public static final int DEFAULT_PREFETCH_SIZE = 100;
+    // Some databases don't allow more elements in an IN predicate
+    private static final int MAX_IN_ELEMENTS = 1000;
+    // The number of unchanged rows of an incremental import after which the
+    // datastorage is flushed, so the loaded objects don't pile up
+    private static final int UNCHANGED_FLUSH_INTERVAL = 1000;
+    // The number of saved objects after which their identifiers are recorded
+    // in the identity index, so the datastorage can write them in batches
+    private static final int IDENTITY_RECORD_INTERVAL = 10000;
     private Configuration config;
     private DataStorage storage;
-    private Map<Class, DataProvider> providers = new LinkedHashMap<Class, DataProvider>();
-    private Map<DataProvider, List> generationDone = new HashMap<DataProvider, List>();
+    private final Map<Class, DataProvider> providers;
+    private final Map<DataProvider, ImportStatistics> generationDone;
+    private final List<ImportListener> listeners;
     // Dataparsing-specific fields
-    private DateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy");
-    private DateFormat calendarFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
-    private Stack thisObjectStack = new Stack();
-    //This tow Properties are used for Expression like this.id
-    private Map<Class, List<LazySetterMethod>> lazyActions = new HashMap<Class, List<LazySetterMethod>>();
-    private Class currentGenerateObject2Class = null;
+    private ValueConverterRegistry converters;
+    // The expression properties of the current entry, which are evaluated
+    // after the object was saved, so expressions like this.id can be resolved
+    private final List<ExpressionAssignment> expressionAssignments = new ArrayList<ExpressionAssignment>();
+    private int expressionBatchSize = 0;
+    private ImportMetrics metrics = new InMemoryImportMetrics();
+    private DependencyGraph dependencyGraph;
+    // Caches for everything that can be resolved once instead of per entry,
+    // these are shared with the workers of a parallel generation
+    private final Map<String, Class> classCache;
+    // The names of the lookups by identifier for the metrics
+    private final ConcurrentMap<Class, String> idLookupNames;
+    private final Map<ImportPlan.Key, ImportPlan> importPlans;
+    private final Map<Object, Map<String, Object>> dataPropertyMaps;
+    private PropertyAccessorFactory accessorFactory = new ReflectionPropertyAccessorFactory();
+    // Lookup cache and the accessors for the lookup fields of each class which
+    // are used to put saved objects into the cache
+    private LookupCache lookupCache = new LookupCache();
+    private IdentityIndex identityIndex = new IdentityIndex();
+    // The saved objects of the current class whose identifiers are not recorded yet
+    private final List<PendingIdentity> pendingIdentities = new ArrayList<PendingIdentity>();
+    // The natural keys of the prefetched entries which don't exist in the datastorage
+    private final Set<Map<String, Serializable>> missingKeys = new HashSet<Map<String, Serializable>>();
+    private final ConcurrentMap<Class, Map<Set<String>, Map<String, PropertyAccessor>>> lookupKeys;
+    private int prefetchSize = DEFAULT_PREFETCH_SIZE;
+    // Parallel generation
+    private DataStorageFactory storageFactory;
+    private int parallelism = 1;
+    private CheckpointStore checkpointStore;
+    private boolean resume;
+    private int commitRows;
+    private long commitMillis;
+    private ImportCheckpoint checkpoint;
+    private ErrorPolicy errorPolicy = ErrorPolicy.ABORT;
+    private boolean offHeapDuplicateDetection;
+    private boolean incremental;
+    private RejectSink rejectSink;
+    private final ConcurrentMap<Class, Set<Map<String, Serializable>>> rejectedKeys;
 
     public GenericDataImporter(DataStorage storage, Configuration config) {
         if (storage == null || config == null) {
@@ -61,123 +127,1496 @@ public class GenericDataImporter implements DataImporter {
         }
         this.storage = storage;
         this.config = config;
+        this.providers = new LinkedHashMap<Class, DataProvider>();
+        this.generationDone = Collections.synchronizedMap(new LinkedHashMap<DataProvider, ImportStatistics>());
+        this.listeners = new CopyOnWriteArrayList<ImportListener>();
+        this.classCache = new ConcurrentHashMap<String, Class>();
+        this.idLookupNames = new ConcurrentHashMap<Class, String>();
+        this.importPlans = new ConcurrentHashMap<ImportPlan.Key, ImportPlan>();
+        this.dataPropertyMaps = Collections.synchronizedMap(new IdentityHashMap<Object, Map<String, Object>>());
+        this.lookupKeys = new ConcurrentHashMap<Class, Map<Set<String>, Map<String, PropertyAccessor>>>();
+        this.rejectedKeys = new ConcurrentHashMap<Class, Set<Map<String, Serializable>>>();
+        this.converters = new ValueConverterRegistry(config.getDatePattern(), config.getCalendarPattern());
+        this.storage.setMetrics(metrics);
+    }
+
+    /**
+     * Creates a worker for a parallel generation which shares the configuration,
+     * the dataproviders and the caches with the given importer, but uses its
+     * own datastorage.
+     */
+    private GenericDataImporter(GenericDataImporter parent, DataStorage storage) {
+        this.storage = storage;
+        this.config = parent.config;
+        this.providers = parent.providers;
+        this.generationDone = parent.generationDone;
+        this.listeners = parent.listeners;
+        this.classCache = parent.classCache;
+        this.idLookupNames = parent.idLookupNames;
+        this.importPlans = parent.importPlans;
+        this.dataPropertyMaps = parent.dataPropertyMaps;
+        this.accessorFactory = parent.accessorFactory;
+        this.lookupCache = parent.lookupCache;
+        this.identityIndex = parent.identityIndex;
+        this.lookupKeys = parent.lookupKeys;
+        this.prefetchSize = parent.prefetchSize;
+        this.expressionBatchSize = parent.expressionBatchSize;
+        this.dependencyGraph = parent.dependencyGraph;
+        this.converters = parent.converters;
+        this.metrics = parent.metrics;
+        this.checkpointStore = parent.checkpointStore;
+        this.commitRows = parent.commitRows;
+        this.commitMillis = parent.commitMillis;
+        this.checkpoint = parent.checkpoint;
+        this.errorPolicy = parent.errorPolicy;
+        this.offHeapDuplicateDetection = parent.offHeapDuplicateDetection;
+        this.incremental = parent.incremental;
+        this.rejectSink = parent.rejectSink;
+        this.rejectedKeys = parent.rejectedKeys;
+    }
+
+    /**
+     * Sets the factory for the accessors which are used to populate the
+     * properties of the generated objects.
+     * 
+     * @param accessorFactory The property accessor factory to use.
+     */
+    public void setPropertyAccessorFactory(PropertyAccessorFactory accessorFactory) {
+        if (accessorFactory == null) {
+            throw new NullPointerException();
+        }
+        this.accessorFactory = accessorFactory;
+        this.importPlans.clear();
+        this.lookupKeys.clear();
+    }
+
+    /**
+     * Sets the registry of the converters which are used to convert the
+     * values of the entries into the types of the properties. Converters for
+     * additional types can be registered on the registry, which is by default
+     * created with the date patterns of the configuration.
+     * 
+     * @param converters The converter registry to use.
+     */
+    public void setValueConverterRegistry(ValueConverterRegistry converters) {
+        if (converters == null) {
+            throw new NullPointerException();
+        }
+        this.converters = converters;
+        this.importPlans.clear();
+        this.lookupKeys.clear();
+    }
+
+    public ValueConverterRegistry getValueConverterRegistry() {
+        return converters;
+    }
+
+    /**
+     * Sets the metrics which record where the time of the import is spent.
+     * The metrics are also passed to the datastorages. By default the metrics
+     * are kept in an {@link InMemoryImportMetrics}.
+     * 
+     * @param metrics The metrics to use, null disables the metrics.
+     */
+    public void setMetrics(ImportMetrics metrics) {
+        this.metrics = metrics == null ? ImportMetrics.NONE : metrics;
+        this.storage.setMetrics(this.metrics);
+    }
+
+    public ImportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the cache for the objects which are found by lookups. The cache is
+     * cleared at the beginning of every generation.
+     * 
+     * @param lookupCache The lookup cache to use, null disables caching.
+     */
+    public void setLookupCache(LookupCache lookupCache) {
+        this.lookupCache = lookupCache;
+    }
+
+    public LookupCache getLookupCache() {
+        return lookupCache;
+    }
+
+    /**
+     * Sets the index of the identifiers of the saved objects. References by
+     * identifier to objects in the index are assigned as references of the
+     * datastorage without loading the objects. The index is kept between
+     * generations, so it has to be cleared when the datastorage is rolled back.
+     * 
+     * @param identityIndex The identity index to use, null disables the index.
+     */
+    public void setIdentityIndex(IdentityIndex identityIndex) {
+        this.identityIndex = identityIndex;
+    }
+
+    public IdentityIndex getIdentityIndex() {
+        return identityIndex;
+    }
+
+    /**
+     * Sets the number of entries which are read ahead from a dataprovider.
+     * The values of the lookups of these entries are resolved with one query
+     * per lookup and put into the lookup cache before the entries are
+     * processed. In the incremental mode the existing objects with the
+     * natural keys of the entries are prefetched the same way. Prefetching
+     * requires a lookup cache.
+     * 
+     * @param prefetchSize The number of entries, 0 disables prefetching.
+     */
+    public void setPrefetchSize(int prefetchSize) {
+        if (prefetchSize < 0) {
+            throw new IllegalArgumentException("Invalid prefetch size: " + prefetchSize);
+        }
+        this.prefetchSize = prefetchSize;
+    }
+
+    /**
+     * Sets the number of objects for which the expression properties are
+     * collected before they are evaluated and written. By default the
+     * expression properties of an object are written right after the object
+     * was saved, with a single additional save per object. A batch size
+     * greater than 0 defers these saves, so the updates of a class are
+     * written together.
+     * 
+     * @param expressionBatchSize The number of objects, 0 writes every object immediately.
+     */
+    public void setExpressionBatchSize(int expressionBatchSize) {
+        if (expressionBatchSize < 0) {
+            throw new IllegalArgumentException("Invalid expression batch size: " + expressionBatchSize);
+        }
+        this.expressionBatchSize = expressionBatchSize;
+    }
+
+    /**
+     * Adds a listener which is notified about the progress of the import.
+     * 
+     * @param listener The listener to add.
+     */
+    public void addImportListener(ImportListener listener) {
+        if (listener == null) {
+            throw new NullPointerException();
+        }
+        listeners.add(listener);
+    }
+
+    public void removeImportListener(ImportListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Enables the parallel generation of objects. Classes which don't depend
+     * on each other are generated concurrently by the given number of threads,
+     * every thread with its own datastorage created by the given factory. All
+     * classes of a dependency level are finished before the generation of the
+     * next level starts.
+     * 
+     * @param parallelism The number of threads, 1 disables the parallel generation.
+     * @param storageFactory The factory for the datastorages of the threads.
+     */
+    public void setParallelism(int parallelism, DataStorageFactory storageFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+        if (parallelism > 1 && storageFactory == null) {
+            throw new NullPointerException("A datastorage factory is required for a parallel generation");
+        }
+        this.parallelism = parallelism;
+        this.storageFactory = storageFactory;
+    }
+
+    /**
+     * Sets the store for the checkpoints of the import. When the importer
+     * commits in chunks, see {@link #setCommitInterval(int, long)}, only
+     * committed work is recorded, so a resumed import never skips rows which
+     * were rolled back. Otherwise the transaction belongs to the caller and a
+     * class is recorded as completed after its objects were flushed, the
+     * caller has to discard the checkpoint when it rolls back. Parallel
+     * workers record a class after their datastorage was released
+     * successfully. The number of consumed entries of a dataprovider is only
+     * recorded at the commits of the chunks. The checkpoint is removed when
+     * all classes were generated.
+     * 
+     * @param checkpointStore The checkpoint store, null disables checkpoints.
+     */
+    public void setCheckpointStore(CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+        this.checkpoint = null;
+    }
+
+    public CheckpointStore getCheckpointStore() {
+        return checkpointStore;
+    }
+
+    /**
+     * Lets the importer commit the objects of a dataprovider in chunks through
+     * {@link DataStorage#commit()}, instead of running the whole import in
+     * the transaction of the caller. A chunk is committed when it has the
+     * given number of rows or is open for the given time, and when the
+     * dataprovider is finished. A failure only rolls back the current chunk.
+     * 
+     * @param commitRows The number of rows per chunk, 0 for no limit.
+     * @param commitMillis The milliseconds per chunk, 0 for no limit.
+     */
+    public void setCommitInterval(int commitRows, long commitMillis) {
+        if (commitRows < 0) {
+            throw new IllegalArgumentException("Invalid commit rows: " + commitRows);
+        }
+        if (commitMillis < 0) {
+            throw new IllegalArgumentException("Invalid commit millis: " + commitMillis);
+        }
+        this.commitRows = commitRows;
+        this.commitMillis = commitMillis;
+    }
+
+    /**
+     * Enables the resume mode. The checkpoint of the previous import is
+     * loaded from the checkpoint store, classes which were completed are not
+     * generated again and the dataproviders of the other classes continue
+     * after the last recorded entry. A {@link SeekableDataProvider} is
+     * positioned directly, entries of other dataproviders are read and
+     * dropped.
+     * 
+     * @param resume True to resume from the last checkpoint.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+        this.checkpoint = null;
+    }
+
+    /**
+     * Sets the error policy for the classes which have no onError attribute
+     * in the configuration. By default the import is aborted on the first
+     * row which could not be populated. Errors of the datastorage always
+     * abort the import.
+     * 
+     * @param errorPolicy The default error policy.
+     */
+    public void setErrorPolicy(ErrorPolicy errorPolicy) {
+        if (errorPolicy == null) {
+            throw new NullPointerException();
+        }
+        this.errorPolicy = errorPolicy;
+    }
+
+    /**
+     * Keeps the hashes of the natural keys, by which duplicate rows of the
+     * classes with a naturalKey attribute are detected, outside of the heap.
+     * Duplicates are only detected within one generation, rows which were
+     * imported before a resumed checkpoint are not known.
+     * 
+     * @param offHeapDuplicateDetection True to allocate the hashes outside of the heap.
+     */
+    public void setOffHeapDuplicateDetection(boolean offHeapDuplicateDetection) {
+        this.offHeapDuplicateDetection = offHeapDuplicateDetection;
+    }
+
+    /**
+     * Enables the incremental mode for the classes with a naturalKey
+     * attribute. Every row is matched with the existing object which has the
+     * same natural key. Rows without a match are inserted, rows with changed
+     * values update the existing object and unchanged rows are not written.
+     * The counts are reported in the {@link ImportStatistics}, unchanged rows
+     * are not passed to the listeners.
+     * 
+     * @param incremental True to only write new and changed rows.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets the sink which receives the rejected rows. Rows which refer to a
+     * rejected row through a lookup are rejected too, regardless of the
+     * error policy of their class.
+     * 
+     * @param rejectSink The reject sink, null only logs the rejected rows.
+     */
+    public void setRejectSink(RejectSink rejectSink) {
+        this.rejectSink = rejectSink;
+    }
+
+    public RejectSink getRejectSink() {
+        return rejectSink;
+    }
+
+    @Override
+    public void add(DataProvider provider) throws DataImporterException {
+        try {
+            providers.put(resolveClass(provider.getSimpleClassName()), provider);
+            dependencyGraph = null;
+        } catch (ClassNotFoundException ex) {
+            throw new DataImporterException(ex);
+        }
+    }
+
+    @Override
+    public Map<DataProvider, ImportStatistics> generateObjects() throws DataImporterException {
+        generate(getDependencyGraph());
+
+        if (checkpointStore != null) {
+            try {
+                checkpointStore.clear();
+                checkpoint = null;
+            } catch (IOException ex) {
+                throw new DataImporterException("Could not remove the checkpoint", ex);
+            }
+        }
+
+        return generationDone;
+    }
+
+    @Override
+    public Map<DataProvider, ImportStatistics> generateObjects(Class clazz) throws DataImporterException {
+        DependencyGraph graph = getDependencyGraph();
+
+        if (graph.containsNode(clazz)) {
+            generate(graph.getSubgraph(clazz));
+        } else if (storage.isManaged(clazz)) {
+            throw new DataDependencyException("Unknown data provider for class " + clazz);
+        }
+
+        return generationDone;
+    }
+
+    /**
+     * Generates the objects for all classes of the given graph in topological
+     * order, so every provider runs exactly once and after all the providers
+     * of the classes it depends on.
+     * 
+     * @param graph The graph of the classes to generate.
+     * @throws DataImporterException 
+     */
+    private void generate(DependencyGraph graph) throws DataImporterException {
+        if (lookupCache != null) {
+            lookupCache.clear();
+        }
+        rejectedKeys.clear();
+        if (checkpointStore != null && checkpoint == null) {
+            try {
+                checkpoint = resume ? checkpointStore.load() : new ImportCheckpoint();
+            } catch (IOException ex) {
+                throw new DataImporterException("Could not load the checkpoint", ex);
+            }
+        }
+        if (parallelism > 1) {
+            generateParallel(graph);
+            return;
+        }
+
+        for (Class clazz : graph.getTopologicalOrder()) {
+            DataProvider provider = providers.get(clazz);
+
+            if (!generationDone.containsKey(provider) && !isCompleted(provider)) {
+                try {
+                    generateClass(clazz, provider);
+
+                    if (checkpoint != null && commitRows == 0 && commitMillis == 0) {
+                        // The importer does not own the transaction, chunks are committed by generateClass
+                        storage.flush();
+                    }
+                } catch (Throwable t) {
+                    throw new DataImporterException("Could not generate objects for class " + clazz, t);
+                }
+
+                checkpointCompleted(provider);
+            }
+        }
+    }
+
+    /**
+     * Generates the objects of the classes of each level of the given graph
+     * concurrently. Waiting for all the classes of a level acts as barrier
+     * before the generation of the next level.
+     * 
+     * @param graph The graph of the classes to generate.
+     * @throws DataImporterException 
+     */
+    private void generateParallel(DependencyGraph graph) throws DataImporterException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            for (List<Class> level : graph.getLevels()) {
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(level.size());
+
+                for (Class clazz : level) {
+                    DataProvider provider = providers.get(clazz);
+
+                    if (!generationDone.containsKey(provider) && !isCompleted(provider)) {
+                        tasks.add(new GenerateClassTask(clazz, provider));
+                    }
+                }
+
+                Throwable failure = null;
+
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException ex) {
+                        if (failure == null) {
+                            failure = ex.getCause();
+                        } else {
+                            log.log(Level.SEVERE, ex.getCause().getMessage(), ex.getCause());
+                        }
+                    }
+                }
+
+                if (failure instanceof DataImporterException) {
+                    throw (DataImporterException) failure;
+                } else if (failure != null) {
+                    throw new DataImporterException(failure);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataImporterException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates the objects of a class with a worker that has its own datastorage.
+     */
+    private class GenerateClassTask implements Callable<Void> {
+
+        private final Class clazz;
+        private final DataProvider provider;
+
+        public GenerateClassTask(Class clazz, DataProvider provider) {
+            this.clazz = clazz;
+            this.provider = provider;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            DataStorage workerStorage = storageFactory.createDataStorage();
+            boolean successful = false;
+            workerStorage.setMetrics(metrics);
+
+            try {
+                new GenericDataImporter(GenericDataImporter.this, workerStorage).generateClass(clazz, provider);
+                successful = true;
+            } catch (Throwable t) {
+                throw new DataImporterException("Could not generate objects for class " + clazz, t);
+            } finally {
+                storageFactory.releaseDataStorage(workerStorage, successful);
+            }
+
+            checkpointCompleted(provider);
+            return null;
+        }
+    }
+
+    private DependencyGraph getDependencyGraph() throws DataImporterException {
+        if (dependencyGraph == null) {
+            dependencyGraph = buildDependencyGraph();
+        }
+
+        return dependencyGraph;
+    }
+
+    /**
+     * Builds the dependency graph of all managed classes for which a
+     * dataprovider exists. Declared dependencies and the classes from which
+     * lookups are done must be generated before. Associations to other
+     * classes only determine the order as long as they don't introduce a
+     * cycle, since associated objects may also be created inline.
+     * 
+     * @return The dependency graph
+     * @throws DataImporterException 
+     */
+    private DependencyGraph buildDependencyGraph() throws DataImporterException {
+        DependencyGraph graph = new DependencyGraph();
+        Map<Class, Set<Class>> associations = new LinkedHashMap<Class, Set<Class>>();
+
+        for (Class clazz : providers.keySet()) {
+            if (storage.isManaged(clazz)) {
+                graph.addNode(clazz);
+            }
+        }
+
+        for (Map.Entry<Class, DataProvider> entry : providers.entrySet()) {
+            Class clazz = entry.getKey();
+
+            if (!graph.containsNode(clazz)) {
+                continue;
+            }
+
+            Map<String, Object> dpMap = (Map) config.getDataProperties(clazz);
+            Set<Class> classAssociations = new LinkedHashSet<Class>();
+            associations.put(clazz, classAssociations);
+
+            try {
+                for (String dependsOn : config.getDefinedDependencies(clazz)) {
+                    addRequiredDependency(graph, clazz, resolveClass(dependsOn.trim()));
+                }
+
+                collectDependencies(graph, clazz, dpMap.values(), classAssociations);
+                String[] fieldNames = entry.getValue().getFieldNames();
+
+                if (fieldNames != null) {
+                    // Resolve the plan for the provided fields before the first entry is read
+                    ImportPlan plan = getImportPlan(clazz, dpMap, new HashSet<String>(Arrays.asList(fieldNames)));
+
+                    for (ImportPlan.Property property : plan.getProperties()) {
+                        if (Map.class.equals(property.getFieldType())) {
+                            classAssociations.add(getTypeArgument(property.getGenericFieldType(), 0));
+                        } else if (!property.isParseable()) {
+                            classAssociations.add(property.getFieldType());
+                        }
+                    }
+                }
+            } catch (ClassNotFoundException ex) {
+                log.log(Level.SEVERE, ex.getMessage(), ex);
+                throw new DataImporterException(ex);
+            } catch (RuntimeException ex) {
+                throw new DataImporterException("Could not generate objects for class " + clazz, ex);
+            }
+        }
+
+        for (Map.Entry<Class, Set<Class>> entry : associations.entrySet()) {
+            for (Class associated : entry.getValue()) {
+                if (associated != null && graph.containsNode(associated) && !graph.addDependencyIfAcyclic(entry.getKey(), associated)) {
+                    log.log(Level.FINE, "Ignoring association from " + entry.getKey() + " to " + associated + " for ordering because of a cycle");
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * Walks the given configuration elements and adds the classes from which
+     * lookups are done as dependencies. The types of the properties used to
+     * lookup objects are collected as associations.
+     */
+    private void collectDependencies(DependencyGraph graph, Class clazz, Collection<?> configElements, Set<Class> associations) throws DataImporterException, ClassNotFoundException {
+        for (Object o : configElements) {
+            if (o instanceof DataProperty) {
+                collectDependencies(graph, clazz, ((DataProperty) o).getDataPropertyOrDataLookup(), associations);
+            } else if (o instanceof DataLookup) {
+                DataLookup dl = (DataLookup) o;
+                Class fromClass = resolveClass(dl.getFrom());
+                addRequiredDependency(graph, clazz, fromClass);
+                registerLookupKey(fromClass, dl);
+
+                for (DataLookupBy dlb : dl.getDataLookupBy()) {
+                    PropertyAccessor accessor = accessorFactory.getAccessor(fromClass, dlb.getName());
+
+                    if (Set.class.equals(accessor.getType())) {
+                        associations.add(getTypeArgument(accessor.getGenericType(), 0));
+                    } else {
+                        associations.add(accessor.getType());
+                    }
+
+                    collectDependencies(graph, clazz, dlb.getDataPropertyOrDataLookup(), associations);
+                }
+            }
+        }
+    }
+
+    private void addRequiredDependency(DependencyGraph graph, Class clazz, Class dependsOn) throws DataDependencyException {
+        if (!storage.isManaged(dependsOn)) {
+            return;
+        }
+        if (!providers.containsKey(dependsOn)) {
+            throw new DataDependencyException("Unknown data provider for class " + dependsOn + " on which " + clazz + " depends");
+        }
+
+        graph.addDependency(clazz, dependsOn);
+    }
+
+    private static Class getTypeArgument(java.lang.reflect.Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            java.lang.reflect.Type argument = ((ParameterizedType) type).getActualTypeArguments()[index];
+
+            if (argument instanceof Class) {
+                return (Class) argument;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Generates the objects for the given class. The objects of the classes
+     * on which this class depends must already be generated.
+     * 
+     * @param clazz The class of the objects which will be generated.
+     * @param provider The dataprovider for the class.
+     * @throws DataImporterException is thrown when an error occurred.
+     */
+    private void generateClass(Class clazz, DataProvider provider) throws DataImporterException {
+        Map<String, Object> dpMap = (Map) config.getDataProperties(clazz);
+        List<ExpressionUpdate> expressionUpdates = new ArrayList<ExpressionUpdate>();
+        ImportStatistics statistics = new ImportStatistics(provider.getSimpleClassName());
+        generationDone.put(provider, statistics);
+        statistics.started();
+        pendingIdentities.clear();
+        missingKeys.clear();
+
+        for (ImportListener listener : listeners) {
+            listener.importStarted(provider);
+        }
+
+        Queue<DataProvider.Entry> window = new ArrayDeque<DataProvider.Entry>(Math.max(prefetchSize, 1));
+        DataProvider.Entry entry = null;
+
+        String providerName = provider.getSimpleClassName();
+        ErrorPolicy policy = config.getErrorPolicy(clazz) == null ? errorPolicy : config.getErrorPolicy(clazz);
+        Map<String, PropertyAccessor> naturalKey = getNaturalKeyAccessors(clazz);
+        DuplicateDetector duplicates = naturalKey == null ? null : new DuplicateDetector(naturalKey.values(), storage, offHeapDuplicateDetection);
+        DuplicatePolicy duplicatePolicy = config.getDuplicatePolicy(clazz);
+        long rows = 0;
+        long errors = 0;
+        boolean chunked = commitRows > 0 || commitMillis > 0;
+        long chunk = checkpoint == null ? 0 : checkpoint.getChunk(providerName);
+        long chunkRows = 0;
+        long chunkStart = System.currentTimeMillis();
+
+        if (checkpoint != null && checkpoint.getRows(providerName) > 0) {
+            rows = checkpoint.getRows(providerName);
+            skipEntries(provider, rows);
+        }
+
+        while ((entry = nextEntry(provider, clazz, dpMap, incremental ? naturalKey : null, window)) != null) {
+            Object toGenerate = null;
+            Serializable saved = null;
+            boolean populated = false;
+            statistics.rowRead();
+            expressionAssignments.clear();
+            rows++;
+            long start = System.nanoTime();
+
+            try {
+                toGenerate = clazz.newInstance();
+                populateFieldValues(toGenerate, entry, clazz, dpMap);
+                populated = true;
+            } catch (Throwable ex) {
+                boolean dependent = isRejectedDependency(ex);
+
+                if (!dependent && !policy.isRejected(++errors)) {
+                    log.log(Level.SEVERE, ex.getMessage(), ex);
+                    throw new DataImporterException(ex);
+                }
+
+                reject(clazz, providerName, rows, entry, toGenerate, ex);
+                statistics.rowSkipped();
+            }
+
+            Serializable existing = null;
+            boolean unchanged = false;
+
+            if (populated && duplicates != null && !duplicates.add(toGenerate)) {
+                // Only hashes are compared, so the object of the other row has to exist
+                existing = findExisting(clazz, toGenerate, naturalKey);
+
+                if (existing == null) {
+                    log.log(Level.WARNING, "The natural key " + getKeyValues(toGenerate, naturalKey) + " of row " + rows + " of " + providerName + " only has the same hash as another key, the row is imported");
+                } else if (duplicatePolicy != DuplicatePolicy.MERGE) {
+                    metrics.recordDuplicate(providerName);
+
+                    if (duplicatePolicy == DuplicatePolicy.REJECT) {
+                        writeRejected(providerName, rows, entry, new DataImporterException("Duplicate natural key " + getKeyValues(toGenerate, naturalKey)));
+                    } else {
+                        log.log(Level.INFO, "Skipping row " + rows + " of " + providerName + " with the duplicate natural key " + getKeyValues(toGenerate, naturalKey));
+                    }
+
+                    existing = null;
+                    populated = false;
+                    statistics.rowSkipped();
+                } else {
+                    metrics.recordDuplicate(providerName);
+                }
+            }
+
+            if (populated && incremental && naturalKey != null && existing == null) {
+                existing = findExisting(clazz, toGenerate, naturalKey);
+            }
+
+            if (existing != null) {
+                // Merged duplicates and rows of an incremental import update the existing object
+                List<ImportPlan.Property> properties = getComparedProperties(clazz, dpMap, entry, toGenerate);
+
+                if (isChanged(properties, existing, toGenerate)) {
+                    copyProperties(properties, toGenerate, existing);
+                } else {
+                    unchanged = true;
+                }
+            }
+
+            long populateEnd = System.nanoTime();
+            metrics.recordPhase(providerName, ImportMetrics.Phase.POPULATE, populateEnd - start);
+
+            if (populated) {
+                try {
+                    Serializable sourceId = identityIndex == null ? null : storage.getIdentifier((Serializable) toGenerate);
+                    if (unchanged) {
+                        saved = cacheSavedObject(existing);
+                    } else {
+                        saved = saveObject(existing == null ? (Serializable) toGenerate : existing);
+                    }
+
+                    // A primitive identifier of 0 was not supplied by the dataprovider
+                    if (sourceId != null && saved != null && !(sourceId instanceof Number && ((Number) sourceId).longValue() == 0)) {
+                        pendingIdentities.add(new PendingIdentity(clazz, sourceId, saved));
+
+                        if (pendingIdentities.size() >= IDENTITY_RECORD_INTERVAL) {
+                            recordIdentities();
+                        }
+                    }
+
+                    metrics.recordPhase(providerName, ImportMetrics.Phase.PERSIST, System.nanoTime() - populateEnd);
+                } catch (Throwable ex) {
+                    log.log(Level.SEVERE, ex.getMessage(), ex);
+                    throw new DataImporterException(ex);
+                }
+
+                metrics.recordRow(providerName);
+
+                if (unchanged) {
+                    statistics.rowUnchanged();
+
+                    if (statistics.getRowsUnchanged() % UNCHANGED_FLUSH_INTERVAL == 0) {
+                        storage.flush();
+                    }
+                } else {
+                    statistics.rowPersisted();
+
+                    if (incremental && naturalKey != null) {
+                        if (existing == null) {
+                            statistics.rowInserted();
+                        } else {
+                            statistics.rowUpdated();
+                        }
+                    }
+
+                    if (expressionAssignments.isEmpty()) {
+                        fireObjectImported(provider, saved);
+                    } else {
+                        expressionUpdates.add(new ExpressionUpdate(toGenerate, saved, new ArrayList<ExpressionAssignment>(expressionAssignments)));
+
+                        if (expressionUpdates.size() >= expressionBatchSize) {
+                            applyExpressions(provider, expressionUpdates);
+                        }
+                    }
+                }
+            }
+
+            if (chunked) {
+                chunkRows++;
+
+                if ((commitRows > 0 && chunkRows >= commitRows) || (commitMillis > 0 && System.currentTimeMillis() - chunkStart >= commitMillis)) {
+                    commitChunk(provider, expressionUpdates, rows, ++chunk);
+                    chunkRows = 0;
+                    chunkStart = System.currentTimeMillis();
+                }
+            }
+        }
+
+        applyExpressions(provider, expressionUpdates);
+        recordIdentities();
+
+        if (chunked && chunkRows > 0) {
+            commitChunk(provider, expressionUpdates, rows, ++chunk);
+        }
+
+        statistics.finished();
+
+        for (ImportListener listener : listeners) {
+            listener.importFinished(provider, statistics);
+        }
+    }
+
+    private static boolean isRejectedDependency(Throwable t) {
+        while (t != null) {
+            if (t instanceof RejectedDependencyException) {
+                return true;
+            }
+            t = t.getCause() == t ? null : t.getCause();
+        }
+
+        return false;
+    }
+
+    /**
+     * Hands the row to the reject sink and remembers the values of the
+     * lookups on the class which could be populated, so rows which refer to
+     * the rejected row are rejected too instead of failing on the lookup.
+     */
+    private void reject(Class clazz, String providerName, long row, DataProvider.Entry entry, Object object, Throwable cause) throws DataImporterException {
+        if (object != null) {
+            Map<Set<String>, Map<String, PropertyAccessor>> keys = lookupKeys.get(clazz);
+
+            if (keys != null) {
+                for (Map<String, PropertyAccessor> accessors : keys.values()) {
+                    Map<String, Serializable> valueMap = getKeyValues(object, accessors);
+
+                    if (valueMap != null) {
+                        Set<Map<String, Serializable>> rejected = rejectedKeys.get(clazz);
+
+                        if (rejected == null) {
+                            rejectedKeys.putIfAbsent(clazz, Collections.synchronizedSet(new HashSet<Map<String, Serializable>>()));
+                            rejected = rejectedKeys.get(clazz);
+                        }
+
+                        rejected.add(valueMap);
+                    }
+                }
+            }
+        }
+
+        writeRejected(providerName, row, entry, cause);
+    }
+
+    /**
+     * Logs the row and hands it to the reject sink.
+     */
+    private void writeRejected(String providerName, long row, DataProvider.Entry entry, Throwable cause) throws DataImporterException {
+        String record = entry instanceof DataProvider.RawEntry ? ((DataProvider.RawEntry) entry).getRawRecord() : null;
+        RejectedRow rejectedRow = new RejectedRow(providerName, row, record == null ? entry.toString() : record, cause);
+        log.log(Level.WARNING, "Rejected row " + row + " of " + providerName + ": " + rejectedRow.getCauseMessage());
+
+        if (rejectSink != null) {
+            try {
+                rejectSink.reject(rejectedRow);
+            } catch (IOException ex) {
+                throw new DataImporterException("Could not write the rejected row " + row + " of " + providerName, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the accessors of the natural key of the class or null if the
+     * class has no natural key.
+     */
+    private Map<String, PropertyAccessor> getNaturalKeyAccessors(Class clazz) {
+        String[] fieldNames = config.getNaturalKey(clazz);
+
+        if (fieldNames.length == 0) {
+            return null;
+        }
+
+        Map<String, PropertyAccessor> accessors = new LinkedHashMap<String, PropertyAccessor>();
+
+        for (String fieldName : fieldNames) {
+            accessors.put(fieldName, accessorFactory.getAccessor(clazz, fieldName));
+        }
+
+        return accessors;
+    }
+
+    /**
+     * Returns the existing object with the natural key of the given object or
+     * null if there is none. Prefetched objects are taken from the lookup
+     * cache, otherwise the storage is queried for a list, since
+     * {@link DataStorage#getByFields(Class, Map)} may fail if nothing matches.
+     */
+    private Serializable findExisting(Class clazz, Object object, Map<String, PropertyAccessor> naturalKey) throws DataImporterException {
+        Map<String, Serializable> valueMap = getKeyValues(object, naturalKey);
+
+        if (valueMap == null) {
+            return null;
+        }
+        // A missing key is only known until the object of the row is saved
+        if (missingKeys.remove(valueMap)) {
+            return null;
+        }
+
+        Serializable cached = lookupCache == null ? null : lookupCache.get(clazz, valueMap);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Serializable> existing;
+
+        try {
+            existing = storage.getListByFields(clazz, valueMap);
+        } catch (RuntimeException ex) {
+            throw new DataImporterException("Could not find the existing object of " + valueMap + " for " + clazz.getName(), ex);
+        }
+
+        if (existing.size() > 1) {
+            throw new DataImporterException("The natural key " + valueMap + " matches " + existing.size() + " objects of " + clazz.getName());
+        }
+
+        return existing.isEmpty() ? null : existing.get(0);
+    }
+
+    /**
+     * Returns the properties which were populated from the entry. The
+     * identifier, the version and expression properties, which are only
+     * evaluated after saving, are left out.
+     */
+    private List<ImportPlan.Property> getComparedProperties(Class clazz, Map<String, Object> dpMap, DataProvider.Entry entry, Object object) throws DataImporterException {
+        ImportPlan plan = getImportPlan(clazz, dpMap, getFieldNames(entry));
+        EntityMetadata entityMetadata = storage.getMetadata(clazz);
+        List<ImportPlan.Property> properties = new ArrayList<ImportPlan.Property>();
+
+        for (ImportPlan.Property property : plan.getProperties()) {
+            String propertyName = property.getName();
+
+            if (entityMetadata != null && (propertyName.equals(entityMetadata.getIdentifierName()) || propertyName.equals(entityMetadata.getVersionName()))) {
+                continue;
+            }
+            if (isExpressionProperty(object, propertyName)) {
+                continue;
+            }
+
+            properties.add(property);
+        }
+
+        return properties;
+    }
+
+    private boolean isChanged(List<ImportPlan.Property> properties, Object existing, Object object) {
+        for (ImportPlan.Property property : properties) {
+            if (!isEqualValue(property.getAccessor().get(existing), property.getAccessor().get(object))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Copies the populated properties onto the existing object, so the
+     * properties which are not imported keep their values when it is saved.
+     */
+    private void copyProperties(List<ImportPlan.Property> properties, Object object, Object existing) {
+        for (ImportPlan.Property property : properties) {
+            property.getAccessor().set(existing, property.getAccessor().get(object));
+        }
+    }
+
+    private boolean isExpressionProperty(Object object, String propertyName) {
+        for (ExpressionAssignment assignment : expressionAssignments) {
+            if (assignment.target == object && assignment.propertyName.equals(propertyName)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compares two property values. Managed objects are compared by their
+     * identifiers, since the existing object may refer to other instances or
+     * proxies.
+     */
+    private boolean isEqualValue(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a instanceof Date && b instanceof Date) {
+            return ((Date) a).getTime() == ((Date) b).getTime();
+        }
+        if (a instanceof BigDecimal && b instanceof BigDecimal) {
+            return ((BigDecimal) a).compareTo((BigDecimal) b) == 0;
+        }
+        if (a instanceof Collection && b instanceof Collection) {
+            return ((Collection) a).size() == ((Collection) b).size() && getComparableValues((Collection) a).equals(getComparableValues((Collection) b));
+        }
+        if (isManagedObject(a) || isManagedObject(b)) {
+            Serializable id = storage.getIdentifier((Serializable) a);
+            return id != null && id.equals(storage.getIdentifier((Serializable) b));
+        }
+
+        return a.equals(b);
+    }
+
+    private Set<Object> getComparableValues(Collection values) {
+        Set<Object> comparable = new HashSet<Object>(values.size() * 2);
+
+        for (Object value : values) {
+            comparable.add(value != null && isManagedObject(value) ? storage.getIdentifier((Serializable) value) : value);
+        }
+
+        return comparable;
+    }
+
+    /**
+     * Returns whether the object is managed by the datastorage. Proxies
+     * subclass the managed class, so the superclasses are checked too.
+     */
+    private boolean isManagedObject(Object value) {
+        for (Class clazz = value.getClass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (storage.isManaged(clazz)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Positions the dataprovider after the given number of entries which were
+     * imported before the last checkpoint.
+     */
+    private void skipEntries(DataProvider provider, long rows) {
+        log.log(Level.INFO, "Resuming " + provider.getSimpleClassName() + " after " + rows + " rows");
+
+        if (provider instanceof SeekableDataProvider) {
+            ((SeekableDataProvider) provider).seek(rows);
+        } else {
+            for (long i = 0; i < rows && provider.next() != null; i++) {
+                // Drop the entries which were already imported
+            }
+        }
+    }
+
+    private boolean isCompleted(DataProvider provider) {
+        if (checkpoint != null && checkpoint.isCompleted(provider.getSimpleClassName())) {
+            log.log(Level.INFO, "Skipping " + provider.getSimpleClassName() + " which was completed before");
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Commits the objects of the current chunk, records the position in the
+     * checkpoint and notifies the listeners.
+     */
+    private void commitChunk(DataProvider provider, List<ExpressionUpdate> expressionUpdates, long rows, long chunk) throws DataImporterException {
+        applyExpressions(provider, expressionUpdates);
+
+        try {
+            storage.commit();
+        } catch (RuntimeException ex) {
+            throw new DataImporterException("Could not commit chunk " + chunk + " of " + provider.getSimpleClassName(), ex);
+        }
+
+        if (checkpoint != null) {
+            checkpoint.setPosition(provider.getSimpleClassName(), rows, chunk);
+            saveCheckpoint();
+        }
+
+        for (ImportListener listener : listeners) {
+            listener.chunkCommitted(provider, chunk, rows);
+        }
+    }
+
+    private void checkpointCompleted(DataProvider provider) throws DataImporterException {
+        if (checkpoint != null) {
+            checkpoint.setCompleted(provider.getSimpleClassName());
+            saveCheckpoint();
+        }
+    }
+
+    private void saveCheckpoint() throws DataImporterException {
+        try {
+            checkpointStore.save(checkpoint);
+        } catch (IOException ex) {
+            throw new DataImporterException("Could not save the checkpoint", ex);
+        }
+    }
+
+    private void fireObjectImported(DataProvider provider, Object object) {
+        for (ImportListener listener : listeners) {
+            listener.objectImported(provider, object);
+        }
+    }
+
+    /**
+     * Evaluates the expression properties of the given saved objects and
+     * writes every object once. Expressions are evaluated on the saved object,
+     * properties of the originally populated object are assigned to the saved
+     * one. The list is cleared afterwards.
+     * 
+     * @param provider The dataprovider of the objects.
+     * @param updates The saved objects with their expression properties.
+     * @throws DataImporterException 
+     */
+    private void applyExpressions(DataProvider provider, List<ExpressionUpdate> updates) throws DataImporterException {
+        long start = System.nanoTime();
+
+        for (ExpressionUpdate update : updates) {
+            // Makes sure a generated identifier is assigned, the datastorage may write asynchronously
+            storage.getIdentifier(update.saved);
+
+            for (ExpressionAssignment assignment : update.assignments) {
+                Object target = assignment.target == update.original ? update.saved : assignment.target;
+
+                try {
+                    new LazySetterMethod(target, assignment.propertyName, new Object[]{new LazyGetterMethod(update.saved, assignment.expression)}).invoke();
+                } catch (InvocationTargetException ex) {
+                    throw new DataImporterException("Could not evaluate the expression " + assignment.expression + " for the property " + assignment.propertyName, ex);
+                } catch (IllegalAccessException ex) {
+                    throw new DataImporterException("Could not evaluate the expression " + assignment.expression + " for the property " + assignment.propertyName, ex);
+                }
+            }
+
+            fireObjectImported(provider, saveObject(update.saved));
+        }
+
+        if (!updates.isEmpty()) {
+            metrics.recordPhase(provider.getSimpleClassName(), ImportMetrics.Phase.PERSIST, System.nanoTime() - start);
+        }
+
+        updates.clear();
+    }
+
+    /**
+     * Records the identifiers of the saved objects in the identity index. The
+     * identifiers are requested for many objects at once, since the
+     * datastorage may only assign them when it writes the objects.
+     */
+    private void recordIdentities() {
+        for (PendingIdentity pendingIdentity : pendingIdentities) {
+            Serializable persistedId = storage.getIdentifier(pendingIdentity.saved);
+
+            if (persistedId != null) {
+                identityIndex.put(pendingIdentity.clazz, pendingIdentity.sourceId, persistedId);
+            }
+        }
+
+        pendingIdentities.clear();
+    }
+
+    /**
+     * A saved object whose identifier is recorded in the identity index later.
+     */
+    private static class PendingIdentity {
+
+        private final Class clazz;
+        private final Serializable sourceId;
+        private final Serializable saved;
+
+        public PendingIdentity(Class clazz, Serializable sourceId, Serializable saved) {
+            this.clazz = clazz;
+            this.sourceId = sourceId;
+            this.saved = saved;
+        }
+    }
+
+    /**
+     * An expression property which is assigned after the object was saved.
+     */
+    private static class ExpressionAssignment {
 
+        private final Object target;
+        private final String propertyName;
+        private final String expression;
 
-        if (config.getDateFormat() != null) {
-            this.dateFormat = config.getDateFormat();
-        }
-        if (config.getCalendarFormat() != null) {
-            this.calendarFormat = config.getCalendarFormat();
+        public ExpressionAssignment(Object target, String propertyName, String expression) {
+            this.target = target;
+            this.propertyName = propertyName;
+            this.expression = expression;
         }
     }
 
-    @Override
-    public void add(DataProvider provider) throws DataImporterException {
-        try {
-            providers.put(Class.forName(config.getPackageName() + "." + provider.getSimpleClassName()), provider);
-        } catch (ClassNotFoundException ex) {
-            throw new DataImporterException(ex);
+    /**
+     * A saved object with the expression properties which are still to be
+     * assigned.
+     */
+    private static class ExpressionUpdate {
+
+        private final Object original;
+        private final Serializable saved;
+        private final List<ExpressionAssignment> assignments;
+
+        public ExpressionUpdate(Object original, Serializable saved, List<ExpressionAssignment> assignments) {
+            this.original = original;
+            this.saved = saved;
+            this.assignments = assignments;
         }
     }
 
-    @Override
-    public Map<DataProvider, List> generateObjects() throws DataImporterException {
-        for (Map.Entry<Class, DataProvider> entry : providers.entrySet()) {
-            if (!generationDone.containsKey(entry.getValue())) {
-                this.generateObjects(entry.getKey());
-            }
+    /**
+     * Returns the next entry of the dataprovider. When lookups are cached,
+     * a window of entries is read ahead and the lookups of these entries are
+     * prefetched before the first entry of the window is returned.
+     * 
+     * @param provider The dataprovider for the class.
+     * @param clazz The class of the objects which will be generated.
+     * @param dpMap The configuration for the properties of the class.
+     * @param naturalKey The natural key by which the existing objects are prefetched or null.
+     * @param window The entries which were already read ahead.
+     * @return The next entry or null if there are no more entries
+     * @throws DataImporterException 
+     */
+    private DataProvider.Entry nextEntry(DataProvider provider, Class clazz, Map<String, Object> dpMap, Map<String, PropertyAccessor> naturalKey, Queue<DataProvider.Entry> window) throws DataImporterException {
+        if (prefetchSize < 2 || lookupCache == null) {
+            return window.isEmpty() ? readEntry(provider) : window.poll();
         }
 
+        if (window.isEmpty()) {
+            DataProvider.Entry entry;
 
-        return generationDone;
-    }
+            while (window.size() < prefetchSize && (entry = readEntry(provider)) != null) {
+                window.add(entry);
+            }
 
-    @Override
-    public Map<DataProvider, List> generateObjects(Class clazz) throws DataImporterException {
-        try {
-            generateObjects2(clazz);
-        } catch (Throwable t) {
-            throw new DataImporterException("Could not generate objects for class " + clazz, t);
+            long start = System.nanoTime();
+            prefetchLookups(clazz, dpMap, window);
+
+            if (naturalKey != null) {
+                prefetchExisting(clazz, dpMap, naturalKey, window);
+            }
+
+            metrics.recordPhase(provider.getSimpleClassName(), ImportMetrics.Phase.POPULATE, System.nanoTime() - start);
         }
-        return generationDone;
+
+        return window.poll();
+    }
+
+    private DataProvider.Entry readEntry(DataProvider provider) {
+        long start = System.nanoTime();
+        DataProvider.Entry entry = provider.next();
+        metrics.recordPhase(provider.getSimpleClassName(), ImportMetrics.Phase.PARSE, System.nanoTime() - start);
+        return entry;
     }
 
     /**
-     * This is the main method which generates the objects and recursively calls
-     * itself when dependencies exist.
+     * Collects the distinct values of the lookups of the given entries which
+     * are not cached yet and resolves them with one IN query per lookup and
+     * chunk. The results are put into the lookup cache, values which can't be
+     * found are left to the regular lookup which reports them.
      * 
      * @param clazz The class of the objects which will be generated.
-     * @return true if the generation was successfull, false if dataprovider was not found
-     * @throws GeneratorException is thrown when an error occurred.
+     * @param dpMap The configuration for the properties of the class.
+     * @param entries The entries of which the lookups should be prefetched.
+     * @throws DataImporterException 
      */
-    private boolean generateObjects2(Class clazz) throws DataImporterException {
-        if (!storage.isManaged(clazz)) {
-            return true;
+    private void prefetchLookups(Class clazz, Map<String, Object> dpMap, Collection<DataProvider.Entry> entries) throws DataImporterException {
+        Map<DataLookup, ImportPlan.LookupDescriptor> lookups = new LinkedHashMap<DataLookup, ImportPlan.LookupDescriptor>();
+        Map<DataLookup, Set<Map<String, Serializable>>> lookupValues = new HashMap<DataLookup, Set<Map<String, Serializable>>>();
+
+        for (DataProvider.Entry entry : entries) {
+            ImportPlan plan = getImportPlan(clazz, dpMap, getFieldNames(entry));
+
+            for (ImportPlan.Property property : plan.getProperties()) {
+                ImportPlan.LookupDescriptor lookup = property.getLookup();
+
+                // Recursive lookups can't be prefetched since the objects are generated within the window
+                if (lookup == null || clazz.equals(lookup.getFromClass()) || Set.class.equals(property.getFieldType()) || ((DataProperty) property.getConfig()).isExpression()) {
+                    continue;
+                }
+
+                Map<String, Serializable> valueMap = getLookupValues(lookup, entry.getSimpleFields().get(property.getName()));
+
+                if (valueMap != null && !lookupCache.contains(lookup.getFromClass(), valueMap)) {
+                    Set<Map<String, Serializable>> values = lookupValues.get(lookup.getLookup());
+
+                    if (values == null) {
+                        values = new LinkedHashSet<Map<String, Serializable>>();
+                        lookups.put(lookup.getLookup(), lookup);
+                        lookupValues.put(lookup.getLookup(), values);
+                    }
+
+                    values.add(valueMap);
+                }
+            }
         }
-        DataProvider provider = providers.get(clazz);
-        Map<String, Object> dpMap = (Map) config.getDataProperties(clazz);
 
-        for (String dependsOn : config.getDefinedDependencies(clazz)) {
-            try {
-                currentGenerateObject2Class = clazz;
-                generateObjects2(Class.forName(config.getPackageName() + "." + dependsOn.trim()));
-            } catch (ClassNotFoundException ex) {
-                log.log(Level.SEVERE, ex.getMessage(), ex);
-                throw new DataImporterException(ex);
+        for (Map.Entry<DataLookup, ImportPlan.LookupDescriptor> lookupEntry : lookups.entrySet()) {
+            ImportPlan.LookupDescriptor lookup = lookupEntry.getValue();
+            Class fromClass = lookup.getFromClass();
+            List<Map<String, Serializable>> values = new ArrayList<Map<String, Serializable>>(lookupValues.get(lookupEntry.getKey()));
+
+            for (int start = 0; start < values.size(); start += MAX_IN_ELEMENTS) {
+                List<Map<String, Serializable>> chunk = values.subList(start, Math.min(start + MAX_IN_ELEMENTS, values.size()));
+                Map<String, Serializable> inValues = new HashMap<String, Serializable>();
+
+                for (DataLookupBy dlb : lookup.getLookupBy()) {
+                    Set<Serializable> distinctValues = new LinkedHashSet<Serializable>(chunk.size() * 2);
+
+                    for (Map<String, Serializable> valueMap : chunk) {
+                        distinctValues.add(valueMap.get(dlb.getName()));
+                    }
+
+                    inValues.put(dlb.getName(), new ArrayList<Serializable>(distinctValues));
+                }
+
+                try {
+                    // With multiple lookup fields the result may contain more combinations than requested, which are cached as well
+                    for (Serializable result : storage.getListByFields(fromClass, inValues)) {
+                        Map<String, Serializable> valueMap = new HashMap<String, Serializable>();
+
+                        for (DataLookupBy dlb : lookup.getLookupBy()) {
+                            valueMap.put(dlb.getName(), (Serializable) accessorFactory.getAccessor(fromClass, dlb.getName()).get(result));
+                        }
+
+                        lookupCache.put(fromClass, valueMap, result);
+                    }
+                } catch (RuntimeException ex) {
+                    log.log(Level.WARNING, "Could not prefetch the lookups for " + fromClass + ", falling back to single lookups", ex);
+                    break;
+                }
             }
         }
+    }
 
+    /**
+     * Resolves the existing objects for the natural keys of the given entries
+     * with one IN query per chunk and puts them into the lookup cache. Keys
+     * which are not found are remembered as missing, unless the result
+     * contains objects whose keys differ from all requested keys, e.g.
+     * because of the collation of the datastorage. Entries whose natural key
+     * is not built from simple values are left to
+     * {@link #findExisting(Class, Object, Map)}.
+     * 
+     * @param clazz The class of the objects which will be generated.
+     * @param dpMap The configuration for the properties of the class.
+     * @param naturalKey The accessors of the natural key fields.
+     * @param entries The entries of which the existing objects should be prefetched.
+     * @throws DataImporterException 
+     */
+    private void prefetchExisting(Class clazz, Map<String, Object> dpMap, Map<String, PropertyAccessor> naturalKey, Collection<DataProvider.Entry> entries) throws DataImporterException {
+        Set<Map<String, Serializable>> keys = new LinkedHashSet<Map<String, Serializable>>();
+        missingKeys.clear();
 
+        for (DataProvider.Entry entry : entries) {
+            Map<String, Serializable> valueMap = getNaturalKeyValues(getImportPlan(clazz, dpMap, getFieldNames(entry)), naturalKey, entry);
 
-        if (provider == null) {
-            throw new NullPointerException("Unknown data provider for class " + clazz);
-        } else if (generationDone.containsKey(provider)) {
-            return true;
+            if (valueMap != null && !lookupCache.contains(clazz, valueMap)) {
+                keys.add(valueMap);
+            }
         }
 
-        DataProvider.Entry entry = null;
+        List<Map<String, Serializable>> values = new ArrayList<Map<String, Serializable>>(keys);
 
-        while ((entry = provider.next()) != null) {
-            Object toGenerate = null;
+        for (int start = 0; start < values.size(); start += MAX_IN_ELEMENTS) {
+            List<Map<String, Serializable>> chunk = values.subList(start, Math.min(start + MAX_IN_ELEMENTS, values.size()));
+            Map<String, Serializable> inValues = new HashMap<String, Serializable>();
+
+            for (String fieldName : naturalKey.keySet()) {
+                Set<Serializable> distinctValues = new LinkedHashSet<Serializable>(chunk.size() * 2);
+
+                for (Map<String, Serializable> valueMap : chunk) {
+                    distinctValues.add(valueMap.get(fieldName));
+                }
+
+                inValues.put(fieldName, new ArrayList<Serializable>(distinctValues));
+            }
 
+            Map<Map<String, Serializable>, Serializable> found = new HashMap<Map<String, Serializable>, Serializable>();
+            Set<Map<String, Serializable>> ambiguous = new HashSet<Map<String, Serializable>>();
+            Set<Map<String, Serializable>> requested = new HashSet<Map<String, Serializable>>(chunk);
+            boolean unrequested = false;
 
             try {
-                toGenerate = clazz.newInstance();
-                thisObjectStack.push(toGenerate);
-                populateFieldValues(toGenerate, entry, clazz, dpMap);
+                for (Serializable result : storage.getListByFields(clazz, inValues)) {
+                    Map<String, Serializable> valueMap = getKeyValues(result, naturalKey);
 
-                toGenerate = storage.saveObject((Serializable) toGenerate);
-            } catch (Throwable ex) {
-                log.log(Level.SEVERE, ex.getMessage(), ex);
-                throw new DataImporterException(ex);
+                    if (valueMap == null || !requested.contains(valueMap)) {
+                        unrequested = true;
+                    } else if (found.put(valueMap, result) != null) {
+                        ambiguous.add(valueMap);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.log(Level.WARNING, "Could not prefetch the existing objects of " + clazz + ", falling back to single queries", ex);
+                break;
             }
-            List<LazySetterMethod> list = lazyActions.get(clazz);
-            if (list != null) {
 
-                for (LazySetterMethod action : list) {
-                    try {
-                        action.invoke();
-                    } catch (InvocationTargetException ex) {
-                        java.util.logging.Logger.getLogger(GenericDataImporter.class.getName()).log(Level.SEVERE, null, ex);
-                    } catch (IllegalAccessException ex) {
-                        java.util.logging.Logger.getLogger(GenericDataImporter.class.getName()).log(Level.SEVERE, null, ex);
+            // Ambiguous keys are reported by findExisting
+            found.keySet().removeAll(ambiguous);
+
+            for (Map.Entry<Map<String, Serializable>, Serializable> foundEntry : found.entrySet()) {
+                lookupCache.put(clazz, foundEntry.getKey(), foundEntry.getValue());
+            }
+
+            if (!unrequested) {
+                for (Map<String, Serializable> valueMap : chunk) {
+                    if (!found.containsKey(valueMap) && !ambiguous.contains(valueMap)) {
+                        missingKeys.add(valueMap);
                     }
-                    toGenerate = storage.saveObject((Serializable) toGenerate);
                 }
+            }
+        }
+    }
+
+    /**
+     * Returns the natural key of the entry in the same form in which it is
+     * read from a populated object, or null if a key field is not a simple
+     * value of the entry.
+     */
+    private Map<String, Serializable> getNaturalKeyValues(ImportPlan plan, Map<String, PropertyAccessor> naturalKey, DataProvider.Entry entry) {
+        Map<String, Serializable> valueMap = new HashMap<String, Serializable>(naturalKey.size() * 2);
 
+        for (String fieldName : naturalKey.keySet()) {
+            ImportPlan.Property property = plan.getProperty(fieldName);
+
+            if (property == null || !property.isParseable() || property.getLookup() != null || (property.getConfig() instanceof DataProperty && ((DataProperty) property.getConfig()).isExpression())) {
+                return null;
+            }
+
+            String value = entry.getSimpleFields().get(fieldName);
+
+            if (value == null || value.isEmpty() || "null".equals(value.toLowerCase())) {
+                return null;
+            }
+
+            Object parsedValue;
+
+            try {
+                parsedValue = property.getConverter().convert(value);
+            } catch (ParseException ex) {
+                // Reported when the object is populated
+                return null;
             }
 
-            if (generationDone.get(provider) == null) {
-                generationDone.put(provider, new ArrayList());
+            if (parsedValue == null) {
+                return null;
+            }
+
+            valueMap.put(fieldName, (Serializable) parsedValue);
+        }
+
+        return valueMap;
+    }
+
+    /**
+     * Returns the values of the given lookup for a simple field value in the
+     * same form in which they are built when populating an object, or null if
+     * the lookup can't be resolved by simple values.
+     */
+    private Map<String, Serializable> getLookupValues(ImportPlan.LookupDescriptor lookup, String value) {
+        if (value == null || value.isEmpty() || "null".equals(value.toLowerCase())) {
+            return null;
+        }
+
+        DataLookupBy[] lookupBy = lookup.getLookupBy();
+        Map<String, Serializable> valueMap = new HashMap<String, Serializable>(lookupBy.length * 2);
+
+        for (int i = 0; i < lookupBy.length; i++) {
+            if (!lookup.getLookupByParseable()[i] || lookupBy[i].isComposite() != null) {
+                return null;
             }
 
-            thisObjectStack.pop();
+            Serializable parsedValue;
 
-            if (DEBUG) {
-                generationDone.get(provider).add(toGenerate);
+            try {
+                parsedValue = (Serializable) lookup.getLookupByConverters()[i].convert(value);
+            } catch (ParseException ex) {
+                // Reported by the regular lookup
+                return null;
+            }
+
+            if (parsedValue == null) {
+                return null;
             }
+
+            valueMap.put(lookupBy[i].getName(), parsedValue);
         }
-        return true;
+
+        return valueMap;
+    }
+
+    private static Set<String> getFieldNames(DataProvider.Entry entry) {
+        Map<String, String> simple = entry.getSimpleFields();
+        Map<String, Collection<DataProvider.Entry>> complex = entry.getComplexFields();
+        return complex.isEmpty() ? simple.keySet() : ImportPlan.Key.fieldNames(simple.keySet(), complex.keySet());
     }
 
     /**
@@ -204,21 +1643,23 @@ public class GenericDataImporter implements DataImporter {
 
         Map<String, String> simple = entry.getSimpleFields();
         Map<String, Collection<DataProvider.Entry>> complex = entry.getComplexFields();
-        Map<String, Object> combined = new HashMap<String, Object>();
-        List<LazySetterMethod> lazySetActions = new ArrayList<LazySetterMethod>();
-        combined.putAll(simple);
-        combined.putAll(complex);
+        ImportPlan plan = getImportPlan(clazz, dpMap, getFieldNames(entry));
 
-        Map<String, Method> setterMap = getSetter(clazz, combined.keySet().toArray());
+        for (ImportPlan.Property property : plan.getProperties()) {
+            String propertyName = property.getName();
+            // Complex values take precedence over simple ones
+            Object propertyValue = complex.get(propertyName);
 
-        for (Map.Entry<String, Object> e : combined.entrySet()) {
-            Method setter = setterMap.get(e.getKey());
+            if (propertyValue == null) {
+                propertyValue = simple.get(propertyName);
+            }
 
-            Class fieldType = setter.getParameterTypes()[0];
-            Object dpOrDataLookupBy = dpMap.get(e.getKey());
+            PropertyAccessor accessor = property.getAccessor();
+            Class fieldType = property.getFieldType();
+            Object dpOrDataLookupBy = property.getConfig();
 
-            if (e.getValue() instanceof String) {
-                String nullString = (String) e.getValue();
+            if (propertyValue instanceof String) {
+                String nullString = (String) propertyValue;
                 if (nullString.toLowerCase().equals("null") || nullString.isEmpty()) {
                     continue;
                 }
@@ -232,38 +1673,38 @@ public class GenericDataImporter implements DataImporter {
                     DataProperty dp = (DataProperty) dpOrDataLookupBy;
 
                     if (dp.isExpression()) {
-                        // Evaluate and assign value at the end
-                        String fieldNamesValue = entry.getSimpleFields().get(dp.getName());
-                        Object thisObject = thisObjectStack.peek();
-
-                        lazySetActions.add(new LazySetterMethod(populateObject, dp.getName(), new Object[]{new LazyGetterMethod(thisObject, fieldNamesValue)}));
+                        // Evaluate and assign value after the object was saved
+                        expressionAssignments.add(new ExpressionAssignment(populateObject, dp.getName(), entry.getSimpleFields().get(dp.getName())));
                     } else {
-                        DataLookup dl = getDataLookupForProperty(dp);
+                        ImportPlan.LookupDescriptor lookup = property.getLookup();
 
-                        if (dl != null) {
+                        if (lookup != null) {
+                            DataLookup dl = lookup.getLookup();
                             Map<String, Serializable> dlbValues = new HashMap<String, Serializable>();
-                            Class fromClass = Class.forName(config.getPackageName() + "." + dl.getFrom());
-                            generateObjects2(fromClass);
+                            Class fromClass = lookup.getFromClass();
+                            DataLookupBy[] lookupBy = lookup.getLookupBy();
                             // Evaluates dataLookupBy elements
 
-                            for (DataLookupBy dlb : dl.getDataLookupBy()) {
+                            for (int i = 0; i < lookupBy.length; i++) {
+                                DataLookupBy dlb = lookupBy[i];
                                 Serializable dlbFieldValue = null;
-                                Class dlbFieldClass = getClassPropertyClass(fromClass, dlb.getName());
+                                Class dlbFieldClass = lookup.getLookupByTypes()[i];
 
-                                if (FormatUtils.isParseableType(dlbFieldClass)) {
+                                if (lookup.getLookupByParseable()[i]) {
                                     if (entry.getSimpleFields().containsKey(dp.getName())) {
-                                        dlbFieldValue = (Serializable) FormatUtils.getParsedValue(dlbFieldClass, entry.getSimpleFields().get(dp.getName()), calendarFormat);
+                                        dlbFieldValue = (Serializable) lookup.getLookupByConverters()[i].convert(entry.getSimpleFields().get(dp.getName()));
                                     } else {
                                         Map<String, Serializable> subValueMap = (Map) (((DataProvider.Entry) entry.getComplexFields().get(dp.getName()).iterator().next()).getSimpleFields());
 
                                         for (Map.Entry<String, Serializable> subValueMapEntry : subValueMap.entrySet()) {
                                             Class subFieldClass = ReflectionUtils.getFieldType(fromClass, subValueMapEntry.getKey());
 
-                                            if (!FormatUtils.isParseableType(subFieldClass)) {
-                                                generateObjects2(subFieldClass);
+                                            ValueConverter subFieldConverter = converters.getConverter(subFieldClass);
+
+                                            if (subFieldConverter == null) {
                                                 dlbValues.put(subValueMapEntry.getKey(), subValueMapEntry.getValue());
                                             } else {
-                                                dlbValues.put(subValueMapEntry.getKey(), FormatUtils.getParsedValue(subFieldClass, (String) subValueMapEntry.getValue()));
+                                                dlbValues.put(subValueMapEntry.getKey(), (Serializable) subFieldConverter.convert((String) subValueMapEntry.getValue()));
                                             }
                                         }
 
@@ -292,15 +1733,10 @@ public class GenericDataImporter implements DataImporter {
                                                     // Christian:
                                                     // Added Support for DataLookup right within DataLookupBy
                                                     Object temporaryHolder = dlbFieldClass.newInstance();
-                                                    Map<String, Object> temporaryDpMap = new HashMap<String, Object>();
-                                                    DataProperty temporaryDp = new DataProperty();
-                                                    temporaryDp.setName(dlb.getName());
-                                                    temporaryDp.getDataPropertyOrDataLookup().add(dlb.getDataPropertyOrDataLookup().get(0));
-                                                    temporaryDpMap.put(dlb.getName(), temporaryDp);
-                                                    populateFieldValues(temporaryHolder, subEntry, dlbFieldClass, temporaryDpMap);
+                                                    populateFieldValues(temporaryHolder, subEntry, dlbFieldClass, getDataPropertyMap(dlb));
 
                                                     // Get the generated value out of the holder
-                                                    dlbFieldValue = (Serializable) getGetter(dlbFieldClass, new String[]{dlb.getName()})[0].invoke(temporaryHolder);
+                                                    dlbFieldValue = (Serializable) accessorFactory.getAccessor(dlbFieldClass, dlb.getName()).get(temporaryHolder);
                                                 } else {
                                                     populateFieldValues(dlbFieldValue, subEntry, dlbFieldClass, getDataPropertyMap(dlb.getDataPropertyOrDataLookup()));
                                                 }
@@ -315,8 +1751,7 @@ public class GenericDataImporter implements DataImporter {
                                     } else {
                                         // Recursion for dataLookupBy sub lookups
                                         if (dlb.getDataPropertyOrDataLookup() != null && !dlb.getDataPropertyOrDataLookup().isEmpty()) {
-                                            generateObjects2(dlbFieldClass);
-                                            Entry nextEntry = ((Entry) ((List) e.getValue()).get(0));
+                                            Entry nextEntry = ((Entry) ((List) propertyValue).get(0));
 
                                             if (nextEntry.getComplexFields().get(null) != null) {
                                                 nextEntry = nextEntry.getComplexFields().get(null).iterator().next();
@@ -334,12 +1769,11 @@ public class GenericDataImporter implements DataImporter {
                                 }
                                 if (dlbFieldValue != null) {
                                     String idValue = "";
-                                    if (FormatUtils.isParseableType(dlbFieldValue.getClass()) || dlb.isComposite() != null) {
+                                    if (converters.isConvertible(dlbFieldValue.getClass()) || dlb.isComposite() != null) {
                                         dlbValues.put(dlb.getName(), dlbFieldValue);
                                     } else {
                                         //We know that the Object for the Where clause is a Complex Object
                                         //so we must load this from the database!
-                                        generateObjects2(dlbFieldValue.getClass());
                                         Object value = null;
 
                                         if (simple.containsKey(dlb.getName())) {
@@ -352,7 +1786,7 @@ public class GenericDataImporter implements DataImporter {
                                                 throw ex;
                                             }
                                         } else {
-                                            List l = (List) e.getValue();
+                                            List l = (List) propertyValue;
                                             DataProvider.Entry subEntry = (DataProvider.Entry) l.toArray()[0];
 
                                             if (subEntry.getSimpleFields().containsKey(dlb.getName())) {
@@ -378,25 +1812,20 @@ public class GenericDataImporter implements DataImporter {
                             // Get from storage by attributes
                             Object o = null;
 
-                            generateObjects2(fromClass);
 
                             try {
-                                if (clazz.equals(fromClass)) {
-                                    // This is a recursive association and we will probably need to flush the storage
-                                    storage.flush();
-                                }
-
+                                // A recursive association will probably need to flush the storage
+                                boolean recursive = clazz.equals(fromClass);
 
+                                if (Set.class.equals(fieldType)) {
+                                    Class genericType = (Class) ((ParameterizedType) property.getGenericFieldType()).getActualTypeArguments()[0];
+                                    Set set = (Set) accessor.get(populateObject);
 
-                                if (dl != null && setter.getParameterTypes()[0].equals(Set.class)) {
-                                    Class genericType = (Class) ((ParameterizedType) setter.getGenericParameterTypes()[0]).getActualTypeArguments()[0];
-                                    Set set = (Set) ExpressionUtils.getValue(populateObject, e.getKey());
-
-                                    if (((Entry) ((List) e.getValue()).get(0)).getComplexFields().isEmpty() && ((Entry) ((List) e.getValue()).get(0)).getSimpleFields().isEmpty()) {
+                                    if (((Entry) ((List) propertyValue).get(0)).getComplexFields().isEmpty() && ((Entry) ((List) propertyValue).get(0)).getSimpleFields().isEmpty()) {
                                         continue;
                                     }
 
-                                    List<Entry> entries = (List<Entry>) e.getValue();
+                                    List<Entry> entries = (List<Entry>) propertyValue;
 
                                     for (Entry entr : entries) {
                                         Object temporaryHolder = genericType.newInstance();
@@ -404,11 +1833,7 @@ public class GenericDataImporter implements DataImporter {
 
                                         for (DataLookupBy dlb : list) {
                                             if (dlb.getDataPropertyOrDataLookup() != null && dlb.getDataPropertyOrDataLookup().size() > 0) {
-                                                Map<String, Object> temporaryDpMap = new HashMap<String, Object>();
-                                                DataProperty temporaryDp = new DataProperty();
-                                                temporaryDp.setName(dlb.getName());
-                                                temporaryDp.getDataPropertyOrDataLookup().add(dlb.getDataPropertyOrDataLookup().get(0));
-                                                temporaryDpMap.put(dlb.getName(), temporaryDp);
+                                                Map<String, Object> temporaryDpMap = getDataPropertyMap(dlb);
                                                 Entry nextEntry = entr;
 
                                                 if (entr.getComplexFields().get(null) != null) {
@@ -422,15 +1847,15 @@ public class GenericDataImporter implements DataImporter {
                                                 if (entr.getComplexFields().get(null) != null) {
                                                     nextEntry = entr.getComplexFields().get(null).iterator().next();
                                                 }
-                                                new LazySetterMethod(temporaryHolder, dlb.getName(), new Object[]{nextEntry.getSimpleFields().get(dlb.getName())}).invoke();
+                                                setValue(temporaryHolder, accessorFactory.getAccessor(genericType, dlb.getName()), nextEntry.getSimpleFields().get(dlb.getName()));
                                             }
                                         }
 
 
-                                        Map<String, Method> getter = this.getGetter(temporaryHolder.getClass());
                                         Map<String, Serializable> whereObj = new HashMap<String, Serializable>();
-                                        for (String name : getter.keySet()) {
-                                            Object check = getter.get(name).invoke(temporaryHolder);
+                                        for (PropertyAccessor getter : accessorFactory.getReadableAccessors(genericType)) {
+                                            String name = getter.getName();
+                                            Object check = getter.get(temporaryHolder);
                                             if (check != null) {
 
                                                 if (check instanceof Collection) {
@@ -448,12 +1873,11 @@ public class GenericDataImporter implements DataImporter {
                                                         continue;
                                                     }
                                                 }
-                                                whereObj.put(name, (Serializable) getter.get(name).invoke(temporaryHolder));
+                                                whereObj.put(name, (Serializable) check);
                                             }
                                         }
 
-                                        generateObjects2(genericType);
-                                        Object setEntry = storage.getByFields(genericType, whereObj);
+                                        Object setEntry = lookup(lookup.getName(), genericType, whereObj, recursive);
                                         set.add(setEntry);
                                     }
                                     continue;
@@ -462,7 +1886,7 @@ public class GenericDataImporter implements DataImporter {
 
 
 
-                                o = storage.getByFields(fromClass, dlbValues);
+                                o = lookup(lookup.getName(), fromClass, dlbValues, recursive);
                             } catch (Exception as) {
                                 throw new DataImporterException(as);
                             }
@@ -486,21 +1910,18 @@ public class GenericDataImporter implements DataImporter {
                             }
 
                             // Assign the object to the field
-                            if (Set.class.equals(setter.getParameterTypes()[0])) {
-                                String[] fieldsForGetter = new String[1];
-                                fieldsForGetter[0] = (String) e.getKey();
-                                Method[] getter = getGetter(populateObject.getClass(), fieldsForGetter);
-                                Set objectSet = (Set) getter[0].invoke(populateObject);
+                            if (Set.class.equals(fieldType)) {
+                                Set objectSet = (Set) accessor.get(populateObject);
 
                                 if (objectSet == null) {
                                     objectSet = new HashSet();
                                 }
 
                                 objectSet.add(o);
-                                setter.invoke(populateObject, objectSet);
+                                accessor.set(populateObject, objectSet);
                             } else {
                                 try {
-                                    setter.invoke(populateObject, o);
+                                    accessor.set(populateObject, o);
                                 } catch (Exception eas) {
                                     throw new DataImporterException(eas);
                                 }
@@ -508,7 +1929,7 @@ public class GenericDataImporter implements DataImporter {
 
                         } else {
                             // Config no Lookup
-                            populateComplexStructure(populateObject, fieldType, setter, e, getDataPropertyMap(dp.getDataPropertyOrDataLookup()));
+                            populateComplexStructure(populateObject, fieldType, accessor, propertyValue, getDataPropertyMap(dp.getDataPropertyOrDataLookup()));
                         }
                     }
                 } else {
@@ -522,36 +1943,28 @@ public class GenericDataImporter implements DataImporter {
                     }
                 }
             } else {
-                if (simple.containsKey(e.getKey())) {
-                    if (FormatUtils.isParseableType(fieldType)) {
+                if (propertyValue instanceof String) {
+                    if (property.isParseable()) {
                         //Native or Wrapper
-                        populateNativeOrWrapper(populateObject, setter, fieldType, e.getValue().toString());
+                        populateNativeOrWrapper(populateObject, accessor, property.getConverter(), (String) propertyValue);
                     } else {
                         //Get by ID
 
-                        populateById(populateObject, setter, fieldType, e.getValue().toString());
+                        populateById(populateObject, accessor, fieldType, (String) propertyValue);
                     }
                 } else {
-                    populateComplexStructure(populateObject, fieldType, setter, e, dpMap);
+                    populateComplexStructure(populateObject, fieldType, accessor, propertyValue, dpMap);
                 }
             }
         }
-        //Give the Expression to the generateObjects2
-        if (!lazySetActions.isEmpty()) {
-            lazyActions.put(currentGenerateObject2Class, lazySetActions);
-        }
-
-
-
-
     }
 
     /**
      * Decide wich Complex Object has to be generate, und generate this.
      * @param populateObject    The Object wich has to be invoke with the Data.
      * @param fieldType This is the Type of the Object wich has to be generate.
-     * @param setter    The Method wich has to be invoke with the generated Object.
-     * @param e The Map.Entry wich provied access to the Data.
+     * @param accessor  The accessor wich has to be invoke with the generated Object.
+     * @param value The collection of entries wich provides access to the Data.
      * @param conf  Map wich gives you Information about the Config.
      * @throws DataImporterException
      * @throws DataParseException
@@ -561,34 +1974,34 @@ public class GenericDataImporter implements DataImporter {
      * @throws ClassNotFoundException
      * @throws InvocationTargetException 
      */
-    private void populateComplexStructure(Object populateObject, Class fieldType, Method setter, Map.Entry<String, Object> e, Map<String, Object> conf) throws DataImporterException, ParseException, DataDependencyException, InstantiationException, IllegalAccessException, ClassNotFoundException, InvocationTargetException {
+    private void populateComplexStructure(Object populateObject, Class fieldType, PropertyAccessor accessor, Object value, Map<String, Object> conf) throws DataImporterException, ParseException, DataDependencyException, InstantiationException, IllegalAccessException, ClassNotFoundException, InvocationTargetException {
         if (Map.class.equals(fieldType)) {
-            populateMap(populateObject, setter,
-                    ((DataProvider.Entry) (((Collection) e.getValue()).toArray()[0])), conf);
+            populateMap(populateObject, accessor,
+                    ((DataProvider.Entry) (((Collection) value).toArray()[0])), conf);
         } else if (Set.class.equals(fieldType)) {
             // Set
-            populateSet(populateObject, setter,
-                    ((DataProvider.Entry) (((Collection) e.getValue()).toArray()[0])), conf);
+            populateSet(populateObject, accessor,
+                    ((DataProvider.Entry) (((Collection) value).toArray()[0])), conf);
         } else {
-            Class valueType = setter.getParameterTypes()[0];
+            Class valueType = fieldType;
             Object valueObject = null;
             try {
                 valueObject = valueType.newInstance();
             } catch (InstantiationException ie) {
                 throw ie;
             }
-            populateFieldValues(valueObject, ((DataProvider.Entry) (((Collection) e.getValue()).toArray()[0])), valueType, conf);
+            populateFieldValues(valueObject, ((DataProvider.Entry) (((Collection) value).toArray()[0])), valueType, conf);
 
             if (storage.isManaged(valueType)) {
                 try {
-                    valueObject = storage.saveObject((Serializable) valueObject);
+                    valueObject = saveObject((Serializable) valueObject);
                 } catch (Exception eee) {
                     //For duplicates
                     throw new DataImporterException(eee);
                 }
             }
 
-            setter.invoke(populateObject, valueObject);
+            accessor.set(populateObject, valueObject);
         }
     }
 
@@ -596,7 +2009,7 @@ public class GenericDataImporter implements DataImporter {
      * A Method wich parsed the Values of an Entry and generate a Set for the 
      * populateObject.
      * @param populateObject    The objects wich has the Set as a Property.
-     * @param set   The method to invoke the generated Set.
+     * @param set   The accessor to invoke the generated Set.
      * @param entry Data in a Entry
      * @param conf Configuration
      * @throws DataParseException
@@ -607,10 +2020,10 @@ public class GenericDataImporter implements DataImporter {
      * @throws ClassNotFoundException
      * @throws InvocationTargetException 
      */
-    private void populateSet(Object populateObject, Method set, DataProvider.Entry entry, Map<String, Object> conf) throws ParseException, DataDependencyException, DataImporterException, InstantiationException, IllegalAccessException, ClassNotFoundException, InvocationTargetException {
+    private void populateSet(Object populateObject, PropertyAccessor set, DataProvider.Entry entry, Map<String, Object> conf) throws ParseException, DataDependencyException, DataImporterException, InstantiationException, IllegalAccessException, ClassNotFoundException, InvocationTargetException {
 
         Set data = new HashSet();
-        Class genericType = (Class) ((ParameterizedType) set.getGenericParameterTypes()[0]).getActualTypeArguments()[0];
+        Class genericType = (Class) ((ParameterizedType) set.getGenericType()).getActualTypeArguments()[0];
         Serializable o = null;
         List<DataProvider.Entry> entries = (List<DataProvider.Entry>) entry.getComplexFields().get(null);
         if (entries != null) {
@@ -626,7 +2039,7 @@ public class GenericDataImporter implements DataImporter {
 
                 populateFieldValues(o, ent, genericType, conf);
                 try {
-                    o = storage.saveObject(o);
+                    o = saveObject(o);
                 } catch (Exception none) {
                     throw new DataImporterException(none);
                 }
@@ -635,7 +2048,7 @@ public class GenericDataImporter implements DataImporter {
             }
         }
         try {
-            set.invoke(populateObject, data);
+            set.set(populateObject, data);
 
 
         } catch (Exception ex) {
@@ -649,7 +2062,7 @@ public class GenericDataImporter implements DataImporter {
      * A Method wich parsed the Values of an Entry and generate a Map for the 
      * populateObject.
      * @param populateObject The objects wich has the Map as a Property.
-     * @param set   The method to invoke the generated Map.
+     * @param set   The accessor to invoke the generated Map.
      * @param entry Data in a Entry
      * @param conf Configuration
      * @throws DataImporterException
@@ -660,30 +2073,29 @@ public class GenericDataImporter implements DataImporter {
      * @throws ClassNotFoundException
      * @throws InvocationTargetException 
      */
-    private void populateMap(Object populateObject, Method set, DataProvider.Entry entry, Map<String, Object> conf) throws DataImporterException, ParseException, DataDependencyException, InstantiationException, IllegalAccessException, ClassNotFoundException, InvocationTargetException {
-        Class genericKey = (Class) ((ParameterizedType) set.getGenericParameterTypes()[0]).getActualTypeArguments()[0];
-        Class genericValue = (Class) ((ParameterizedType) set.getGenericParameterTypes()[0]).getActualTypeArguments()[1];
+    private void populateMap(Object populateObject, PropertyAccessor set, DataProvider.Entry entry, Map<String, Object> conf) throws DataImporterException, ParseException, DataDependencyException, InstantiationException, IllegalAccessException, ClassNotFoundException, InvocationTargetException {
+        Class genericKey = (Class) ((ParameterizedType) set.getGenericType()).getActualTypeArguments()[0];
+        Class genericValue = (Class) ((ParameterizedType) set.getGenericType()).getActualTypeArguments()[1];
         Map<String, Collection<Entry>> map = entry.getComplexFields();
 
         Map toSet = new HashMap();
         for (String key : map.keySet()) {
             Object keyObject = null;
             //Get Key
-            if (!FormatUtils.isParseableType(genericKey)) {
+            if (!converters.isConvertible(genericKey)) {
                 Class identifierType = storage.getIdentifierType(genericKey);
                 Object o = null;
 
                 try {
-                    o = FormatUtils.getParsedValue(identifierType, key, calendarFormat);
+                    o = convert(identifierType, key);
                 } catch (ParseException ex) {
                     log.log(Level.SEVERE, ex.getMessage(), ex);
                     throw new DataImporterException(ex);
                 }
 
-                generateObjects2(genericKey);
-                keyObject = storage.getById(genericKey, (Serializable) o);
+                keyObject = getById(genericKey, (Serializable) o);
             } else {
-                keyObject = FormatUtils.getParsedValue(genericKey, key, calendarFormat);
+                keyObject = convert(genericKey, key);
             }
 
             //Create Value
@@ -700,7 +2112,7 @@ public class GenericDataImporter implements DataImporter {
             toSet.put(keyObject, valueObject);
         }
         try {
-            set.invoke(populateObject, toSet);
+            set.set(populateObject, toSet);
 
 
         } catch (Exception ex) {
@@ -709,84 +2121,48 @@ public class GenericDataImporter implements DataImporter {
         }
     }
 
-    /**
-     * This Mehtod return the Class of an Property
-     * @param clazz
-     * @param propertyName
-     * @return 
-     */
-    private Class getClassPropertyClass(Class clazz, String propertyName) {
-        //log.log(Level.SEVERE, "Class: " + clazz + ", property: " + propertyName);
-        String[] ar = new String[1];
-        ar[0] = propertyName;
-        Method[] setter = null;
-
-        try {
-            setter = getSetter(clazz, ar);
-        } catch (RuntimeException re) {
-            throw re;
-        }
-        return setter[0].getParameterTypes()[0];
-    }
-
     /**
      * This Method generate a Native or Wrapper Object for populateObject and
      * invoke the Object.
      * @param populateObject    Object wich contains the Native or Wrapper.
-     * @param setter    The Method to set the generated Object.
-     * @param fieldType The Type of the generated Object.
+     * @param accessor  The accessor to set the generated Object.
+     * @param converter The converter for the type of the generated Object.
      * @param fieldValue The Value of the generated Object.
      * @throws DataImporterException 
      */
-    private void populateNativeOrWrapper(Object populateObject, Method setter, Class fieldType, String fieldValue) throws DataImporterException {
-        try {
-            Object o = FormatUtils.getParsedValue(fieldType, fieldValue, calendarFormat);
-
-            // Set null value
-            if (o == null) {
-                setValue(populateObject, setter, null);
-            }
-
-            // Setting the java type value, e.g. String, Date, Calendar, etc.
-            setValue(populateObject, setter, o);
-
-        } catch (ParseException ex) {
-            log.log(Level.SEVERE, ex.getMessage(), ex);
-            throw new DataImporterException(ex);
-        }
-
+    private void populateNativeOrWrapper(Object populateObject, PropertyAccessor accessor, ValueConverter converter, String fieldValue) throws DataImporterException {
+        // Setting the java type value, e.g. String, Date, Calendar, etc.
+        setValue(populateObject, accessor, converter, fieldValue);
     }
 
     /**
      * This Method search by the ID in DB and invoke the Result into populateObject.
      * @param populateObject    Object wich contains the Native or Wrapper.
-     * @param setter    The Method to set the generated Object.
+     * @param accessor  The accessor to set the generated Object.
      * @param fieldType The Type of the generated Object.
      * @param fieldValue  The Value of the generated Object.
      * @throws DataImporterException 
      */
-    private void populateById(Object populateObject, Method setter, Class fieldType, String fieldValue) throws DataImporterException {
+    private void populateById(Object populateObject, PropertyAccessor accessor, Class fieldType, String fieldValue) throws DataImporterException {
         Class identifierType = storage.getIdentifierType(fieldType);
         Object o = null;
 
         try {
-            o = FormatUtils.getParsedValue(identifierType, fieldValue, calendarFormat);
-            //log.log(Level.SEVERE, o.toString());
+            o = convert(identifierType, fieldValue);
         } catch (Exception ex) {
             log.log(Level.SEVERE, ex.getMessage(), ex);
             throw new DataImporterException(ex);
         }
-        generateObjects2(fieldType);
         Object val = null;
         try {
-            val = storage.getById(fieldType, (Serializable) o);
+            val = getById(fieldType, (Serializable) o);
         } catch (Exception ea) {
             throw new DataImporterException(ea);
         }
 
 
         try {
-            setter.invoke(populateObject, val);
+            accessor.set(populateObject, val);
             //@todo: ich habe eine vermutung
             // wenn populateObject val zugewiesen bekommt, dann muss val auch populateObject zugewiesen bekommen
             // es muss in der klasse von val nach der methode setXXX(populateObject.class)
@@ -800,49 +2176,48 @@ public class GenericDataImporter implements DataImporter {
     }
 
     /**
-     * Set an Object value into object, by invoke the Method m.
+     * Set an Object value into object, by invoke the accessor.
      * @param object Object wich contains the value as a Property.
-     * @param m The Method to set the generated Object.
+     * @param accessor The accessor to set the generated Object.
      * @param value  The Value that has to be set.
      * @throws DataImporterException 
      */
-    private void setValue(Object object, Method m, Object value) throws DataImporterException {
-        try {
-            Object o = null;
-            if (value == null) {
-                m.invoke(object, o);
-                return;
-            }
+    private void setValue(Object object, PropertyAccessor accessor, Object value) throws DataImporterException {
+        setValue(object, accessor, value instanceof String ? converters.getConverter(accessor.getType()) : null, value);
+    }
 
-            if (value instanceof GregorianCalendar) {
-                m.invoke(object, value);
-                return;
-            }
+    /**
+     * Set an Object value into object, by invoke the accessor. String values
+     * are converted with the given converter, ints, longs and booleans are
+     * set without boxing them.
+     * @param object Object wich contains the value as a Property.
+     * @param accessor The accessor to set the generated Object.
+     * @param converter The converter for the type of the property or null.
+     * @param value  The Value that has to be set.
+     * @throws DataImporterException 
+     */
+    private void setValue(Object object, PropertyAccessor accessor, ValueConverter converter, Object value) throws DataImporterException {
+        try {
             if (value instanceof String) {
-
                 String s = (String) value;
                 if ("NULL".equals(s.toUpperCase()) || "".equals(s)) {
-
-                    m.invoke(object, o);
+                    accessor.set(object, null);
                     return;
                 }
 
-                if (m.getParameterTypes()[0].equals(Integer.TYPE)) {
-                    m.invoke(object, Integer.parseInt((String) value));
-
-
-                } else if (m.getParameterTypes()[0].equals(Integer.class)) {
-                    m.invoke(object, Integer.parseInt((String) value));
-                } else if (m.getParameterTypes()[0].equals(Long.class) || m.getParameterTypes()[0].equals(Long.TYPE)) {
-                    m.invoke(object, Long.parseLong((String) value));
-                } else if (m.getParameterTypes()[0].equals(Boolean.class) || m.getParameterTypes()[0].equals(Boolean.TYPE)) {
-                    m.invoke(object, Boolean.parseBoolean((String) value));
+                if (converter instanceof IntegerConverter) {
+                    accessor.setInt(object, ((IntegerConverter) converter).convertInt(s));
+                } else if (converter instanceof LongConverter) {
+                    accessor.setLong(object, ((LongConverter) converter).convertLong(s));
+                } else if (converter instanceof BooleanConverter) {
+                    accessor.setBoolean(object, ((BooleanConverter) converter).convertBoolean(s));
+                } else if (converter != null) {
+                    accessor.set(object, converter.convert(s));
                 } else {
-
-                    m.invoke(object, value);
+                    accessor.set(object, value);
                 }
             } else {
-                m.invoke(object, value);
+                accessor.set(object, value);
             }
         } catch (Exception ex) {
             log.log(Level.SEVERE, ex.getMessage(), ex);
@@ -851,144 +2226,269 @@ public class GenericDataImporter implements DataImporter {
     }
 
     /**
-     * This Method returns all Setter for the Properties wich are in fields of a Class.
-     * @param objectClass The Class wich contains the setter.
-     * @param fields Propertynames of the setter you want.
-     * @return Map wich key = propertyname and value = setter.
+     * Converts the given value into the given type.
+     * @param type The type of the value.
+     * @param value The value to convert.
+     * @return The converted value.
+     * @throws ParseException Is thrown when the value can't be converted.
      */
-    private Map<String, Method> getSetter(Class objectClass, Object[] fields) {
+    private Object convert(Class type, String value) throws ParseException {
+        ValueConverter converter = converters.getConverter(type);
 
-        Map<String, Method> setterMap = new HashMap<String, Method>();
-        for (int i = 0; i < fields.length; i++) {
-            for (Method m : objectClass.getMethods()) {
-                if (m.getName().startsWith("set") && m.getName().substring(3).equalsIgnoreCase((String) fields[i])) {
-                    Class[] types = m.getParameterTypes();
+        if (converter == null) {
+            throw new ParseException("Values of " + type.getName() + " can't be converted", 0);
+        }
 
-                    if (types.length != 1) {
-                        throw new IllegalArgumentException("This is not a valid setter");
-                    }
-                    setterMap.put((String) fields[i], m);
-                    break;
-                }
+        return converter.convert(value);
+    }
+
+    /**
+     * Returns the object of the given class with the given identifier. An
+     * object which was saved in this run is returned as reference from the
+     * identity index, other objects are loaded from the datastorage.
+     * 
+     * @param clazz The class of the object.
+     * @param id The identifier supplied by the dataprovider.
+     * @return The object or a reference to it
+     */
+    private Serializable getById(Class clazz, Serializable id) {
+        long start = System.nanoTime();
+
+        if (!pendingIdentities.isEmpty() && pendingIdentities.get(0).clazz == clazz) {
+            // The object may refer to an object of its own class
+            recordIdentities();
+        }
+
+        Serializable persistedId = identityIndex == null || id == null ? null : identityIndex.get(clazz, id);
+        Serializable o;
+
+        if (persistedId != null) {
+            o = storage.getReference(clazz, persistedId);
+        } else {
+            o = storage.getById(clazz, id);
+        }
+
+        metrics.recordLookup(getIdLookupName(clazz), System.nanoTime() - start, persistedId != null);
+        return o;
+    }
+
+    private String getIdLookupName(Class clazz) {
+        String lookupName = idLookupNames.get(clazz);
+
+        if (lookupName == null) {
+            lookupName = clazz.getSimpleName() + "(id)";
+            idLookupNames.put(clazz, lookupName);
+        }
+
+        return lookupName;
+    }
+
+    /**
+     * Returns the object of the given class which has the given values. The
+     * lookup cache is asked first, the datastorage is only queried on a miss.
+     * @param lookupName The name of the lookup for the metrics.
+     * @param clazz The class of the object.
+     * @param valueMap The values of the lookup fields.
+     * @param flush True if the datastorage has to be flushed before querying.
+     * @return The object.
+     * @throws RejectedDependencyException is thrown when the row of the object was rejected.
+     */
+    private Serializable lookup(String lookupName, Class clazz, Map<String, Serializable> valueMap, boolean flush) throws RejectedDependencyException {
+        Set<Map<String, Serializable>> rejected = rejectedKeys.get(clazz);
+
+        if (rejected != null && rejected.contains(valueMap)) {
+            throw new RejectedDependencyException("Object from type " + clazz + " with the lookup map " + valueMap + " was rejected");
+        }
+
+        long start = System.nanoTime();
+        Serializable o = lookupCache == null ? null : lookupCache.get(clazz, valueMap);
+
+        if (o != null) {
+            metrics.recordLookup(lookupName, System.nanoTime() - start, true);
+        } else {
+            if (flush) {
+                storage.flush();
             }
 
-            if (setterMap.get((String) fields[i]) == null) {
-                throw new IllegalArgumentException("Setter not found for field " + fields[i] + " on class " + objectClass);
+            o = storage.getByFields(clazz, valueMap);
+
+            if (o != null && lookupCache != null) {
+                lookupCache.put(clazz, valueMap, o);
             }
+
+            metrics.recordLookup(lookupName, System.nanoTime() - start, false);
         }
 
-        return setterMap;
+        return o;
     }
 
     /**
-     * This Method returns all Getter for the Properties wich are in fields of a Class.
-     * @param objectClass The Class wich contains the getter.
-     * @param fields Propertynames of the getter you want.
-     * @return Map wich key = propertyname and value = getter.
+     * Saves the object and puts it into the lookup cache for every lookup
+     * which is done on its class, so objects generated within the same run
+     * can be found without querying the datastorage.
+     * @param object The object to save.
+     * @return The saved object.
      */
-    private Map<String, Method> getGetter(Class objectClass, Object[] fields) {
+    private Serializable saveObject(Serializable object) {
+        return cacheSavedObject(storage.saveObject(object));
+    }
 
-        Map<String, Method> setterMap = new HashMap<String, Method>();
-        for (int i = 0; i < fields.length; i++) {
-            for (Method m : objectClass.getMethods()) {
-                if (m.getName().startsWith("get") && !m.getName().equals("getClass")) {
-                    String name = m.getName().substring(3);
-                    name = name.substring(0, 1).toLowerCase() + name.substring(1);
-                    setterMap.put(name, m);
-                } else if (m.getName().startsWith("is") && !m.getName().equals("getClass")) {
-                    String name = m.getName().substring(2);
-                    name = name.substring(0, 1).toLowerCase() + name.substring(1);
-                    setterMap.put(name, m);
-                }
-            }
+    /**
+     * Puts the saved object into the lookup cache for the registered lookups
+     * of its class.
+     */
+    private Serializable cacheSavedObject(Serializable saved) {
+        if (lookupCache != null && saved != null) {
+            Map<Set<String>, Map<String, PropertyAccessor>> keys = lookupKeys.get(saved.getClass());
+
+            if (keys != null) {
+                for (Map<String, PropertyAccessor> accessors : keys.values()) {
+                    Map<String, Serializable> valueMap = getKeyValues(saved, accessors);
 
-            if (setterMap.get((String) fields[i]) == null) {
-                throw new IllegalArgumentException("Getter not found for field " + fields[i] + " on class " + objectClass);
+                    if (valueMap != null) {
+                        lookupCache.put(saved.getClass(), valueMap, saved);
+                    }
+                }
             }
         }
 
-        return setterMap;
+        return saved;
     }
 
-    private Map<String, Method> getGetter(Class objectClass) {
+    /**
+     * Returns the values of the given lookup fields of the object.
+     * @return The values or null if a value is not set
+     */
+    private static Map<String, Serializable> getKeyValues(Object object, Map<String, PropertyAccessor> accessors) {
+        Map<String, Serializable> valueMap = new HashMap<String, Serializable>(accessors.size() * 2);
 
-        Map<String, Method> setterList = new HashMap<String, Method>();
+        for (Map.Entry<String, PropertyAccessor> accessorEntry : accessors.entrySet()) {
+            Object value = accessorEntry.getValue().get(object);
 
-        for (Method m : objectClass.getMethods()) {
-            if (m.getName().startsWith("get") && !m.getName().equals("getClass")) {
-                String name = m.getName().substring(3);
-                name = name.substring(0, 1).toLowerCase() + name.substring(1);
-                setterList.put(name, m);
-            } else if (m.getName().startsWith("is") && !m.getName().equals("getClass")) {
-                String name = m.getName().substring(2);
-                name = name.substring(0, 1).toLowerCase() + name.substring(1);
-                setterList.put(name, m);
+            if (value == null) {
+                return null;
             }
 
+            valueMap.put(accessorEntry.getKey(), (Serializable) value);
         }
 
-        return setterList;
+        return valueMap;
     }
 
     /**
-     *This Method returns all Setter for the Properties wich are in fields of a Class.
-     * @param objectClass The Class wich contains the setter.
-     * @param fields Propertynames of the setter you want.
-     * @return Sorted array Property Index of fields = Method Index in the return Array.
+     * Remembers the fields of the given lookup, so saved objects of the class
+     * can be put into the lookup cache. Only lookups by parseable values are
+     * registered, since other values are not comparable by equality.
+     * @param fromClass The class from which the lookup is done.
+     * @param dl The lookup.
      */
-    private Method[] getSetter(Class objectClass, String[] fields) {
+    private void registerLookupKey(Class fromClass, DataLookup dl) {
+        Map<String, PropertyAccessor> accessors = new HashMap<String, PropertyAccessor>();
 
-        Method[] setter = new Method[fields.length];
-        for (int i = 0; i < fields.length; i++) {
-            for (Method m : objectClass.getMethods()) {
-                if (m.getName().startsWith("set") && m.getName().substring(3).equalsIgnoreCase((String) fields[i])) {
-                    Class[] types = m.getParameterTypes();
+        for (DataLookupBy dlb : dl.getDataLookupBy()) {
+            PropertyAccessor accessor = accessorFactory.getAccessor(fromClass, dlb.getName());
 
-                    if (types.length != 1) {
-                        throw new IllegalArgumentException("This is not a valid setter");
-                    }
-                    setter[i] = m;
-                    break;
-                }
+            if (dlb.isComposite() != null || !converters.isConvertible(accessor.getType())) {
+                return;
             }
 
-            if (setter[i] == null) {
-                throw new IllegalArgumentException("Setter not found for field " + fields[i] + " on class " + objectClass.getSimpleName());
+            accessors.put(dlb.getName(), accessor);
+        }
+
+        Map<Set<String>, Map<String, PropertyAccessor>> keys = lookupKeys.get(fromClass);
+
+        if (keys == null) {
+            keys = new ConcurrentHashMap<Set<String>, Map<String, PropertyAccessor>>();
+            Map<Set<String>, Map<String, PropertyAccessor>> existing = lookupKeys.putIfAbsent(fromClass, keys);
+
+            if (existing != null) {
+                keys = existing;
             }
         }
 
-        return setter;
+        if (!accessors.isEmpty() && !keys.containsKey(accessors.keySet())) {
+            keys.put(Collections.unmodifiableSet(accessors.keySet()), Collections.unmodifiableMap(accessors));
+        }
+    }
+
+    /**
+     * Returns the class with the given simple name within the configured package.
+     * The result is cached, so the class loader is only asked once per name.
+     * @param simpleName The simple name of the class.
+     * @return The class.
+     * @throws ClassNotFoundException 
+     */
+    private Class resolveClass(String simpleName) throws ClassNotFoundException {
+        Class clazz = classCache.get(simpleName);
+
+        if (clazz == null) {
+            clazz = Class.forName(config.getPackageName() + "." + simpleName);
+            classCache.put(simpleName, clazz);
+        }
+
+        return clazz;
     }
 
     /**
-     *This Method returns all Getter for the Properties wich are in fields of a Class.
-     * @param objectClass The Class wich contains the getter.
-     * @param fields Propertynames of the getter you want.
-     * @return Sorted array Property Index of fields = Method Index in the return Array.
+     * Returns the import plan for the given class, configuration and field names.
+     * The plan is built on the first request and cached afterwards.
+     * @param clazz The class of the objects which will be populated.
+     * @param dpMap The configuration for the properties of the class.
+     * @param fieldNames The names of the fields for which values are provided.
+     * @return The import plan.
+     * @throws DataImporterException 
      */
-    private Method[] getGetter(Class objectClass, String[] fields) {
+    private ImportPlan getImportPlan(Class clazz, Map<String, Object> dpMap, Set<String> fieldNames) throws DataImporterException {
+        ImportPlan.Key key = new ImportPlan.Key(clazz, dpMap, fieldNames);
+        ImportPlan plan = importPlans.get(key);
+
+        if (plan == null) {
+            key = key.immutableCopy();
+            plan = buildImportPlan(clazz, dpMap, key.getFieldNames());
+            importPlans.put(key, plan);
+        }
+
+        return plan;
+    }
+
+    private ImportPlan buildImportPlan(Class clazz, Map<String, Object> dpMap, Set<String> fieldNames) throws DataImporterException {
+        List<ImportPlan.Property> properties = new ArrayList<ImportPlan.Property>(fieldNames.size());
+
+        for (String fieldName : fieldNames) {
+            Object dpOrDataLookupBy = dpMap.get(fieldName);
+            ImportPlan.LookupDescriptor lookup = null;
+
+            if (dpOrDataLookupBy instanceof DataProperty) {
+                DataLookup dl = getDataLookupForProperty((DataProperty) dpOrDataLookupBy);
+
+                if (dl != null) {
+                    Class fromClass;
+
+                    try {
+                        fromClass = resolveClass(dl.getFrom());
+                    } catch (ClassNotFoundException ex) {
+                        throw new DataImporterException(ex);
+                    }
 
-        Method[] setter = new Method[fields.length];
-        for (int i = 0; i < fields.length; i++) {
-            for (Method m : objectClass.getMethods()) {
+                    List<DataLookupBy> lookupBy = dl.getDataLookupBy();
+                    Class[] lookupByTypes = new Class[lookupBy.size()];
+                    ValueConverter[] lookupByConverters = new ValueConverter[lookupBy.size()];
+
+                    for (int i = 0; i < lookupByTypes.length; i++) {
+                        lookupByTypes[i] = accessorFactory.getAccessor(fromClass, lookupBy.get(i).getName()).getType();
+                        lookupByConverters[i] = converters.getConverter(lookupByTypes[i]);
+                    }
 
-                if (m.getName().startsWith("get") && !m.getName().equals("getClass")) {
-                    String name = m.getName().substring(3);
-                    name = name.substring(0, 1).toLowerCase() + name.substring(1);
-                    setter[i] = m;
-                } else if (m.getName().startsWith("is") && !m.getName().equals("getClass")) {
-                    String name = m.getName().substring(2);
-                    name = name.substring(0, 1).toLowerCase() + name.substring(1);
-                    setter[i] = m;
+                    lookup = new ImportPlan.LookupDescriptor(dl, fromClass, lookupByTypes, lookupByConverters);
+                    registerLookupKey(fromClass, dl);
                 }
             }
 
-            if (setter[i] == null) {
-                throw new IllegalArgumentException("Getter not found for field " + fields[i] + " on class " + objectClass);
-            }
+            PropertyAccessor accessor = accessorFactory.getAccessor(clazz, fieldName);
+            properties.add(new ImportPlan.Property(fieldName, accessor, converters.getConverter(accessor.getType()), dpOrDataLookupBy, lookup));
         }
 
-        return setter;
+        return new ImportPlan(clazz, properties.toArray(new ImportPlan.Property[properties.size()]));
     }
 
     /**
@@ -997,15 +2497,41 @@ public class GenericDataImporter implements DataImporter {
      * @return 
      */
     private Map<String, Object> getDataPropertyMap(Collection col) {
-        Map<String, Object> m = new HashMap<String, Object>();
         if (col == null) {
-            return m;
+            return new HashMap<String, Object>();
         }
-        for (Object o : col) {
-            if (o instanceof DataProperty) {
-                DataProperty p = (DataProperty) o;
-                m.put(p.getName(), p);
+
+        Map<String, Object> m = dataPropertyMaps.get(col);
+
+        if (m == null) {
+            m = new HashMap<String, Object>();
+            for (Object o : col) {
+                if (o instanceof DataProperty) {
+                    DataProperty p = (DataProperty) o;
+                    m.put(p.getName(), p);
+                }
             }
+            dataPropertyMaps.put(col, m);
+        }
+        return m;
+    }
+
+    /**
+     * Returns a configuration map which contains a single DataProperty with the
+     * name of the given DataLookupBy and its first nested element.
+     * @param dlb
+     * @return 
+     */
+    private Map<String, Object> getDataPropertyMap(DataLookupBy dlb) {
+        Map<String, Object> m = dataPropertyMaps.get(dlb);
+
+        if (m == null) {
+            m = new HashMap<String, Object>();
+            DataProperty temporaryDp = new DataProperty();
+            temporaryDp.setName(dlb.getName());
+            temporaryDp.getDataPropertyOrDataLookup().add(dlb.getDataPropertyOrDataLookup().get(0));
+            m.put(dlb.getName(), temporaryDp);
+            dataPropertyMaps.put(dlb, m);
         }
         return m;
     }
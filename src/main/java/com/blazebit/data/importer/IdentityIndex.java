@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the identifiers which the dataproviders supplied for the saved objects
+ * to the identifiers which the objects got in the datastorage. References by
+ * identifier to objects which were generated in the same run can then be
+ * assigned without loading the objects. This class is thread safe.
+ *
+ * @author Christian Beikov
+ */
+public class IdentityIndex {
+
+    private final ConcurrentMap<Class, ConcurrentMap<Object, Serializable>> identifiers = new ConcurrentHashMap<Class, ConcurrentMap<Object, Serializable>>();
+
+    /**
+     * Returns the identifier in the datastorage of the object of the given
+     * class which had the given source identifier.
+     * 
+     * @param clazz The class of the object.
+     * @param sourceId The identifier supplied by the dataprovider.
+     * @return The persisted identifier or null if the object is unknown
+     */
+    public Serializable get(Class clazz, Object sourceId) {
+        Map<Object, Serializable> classIdentifiers = identifiers.get(clazz);
+        return classIdentifiers == null ? null : classIdentifiers.get(sourceId);
+    }
+
+    /**
+     * Records the identifier of a saved object.
+     * 
+     * @param clazz The class of the object.
+     * @param sourceId The identifier supplied by the dataprovider.
+     * @param persistedId The identifier in the datastorage.
+     */
+    public void put(Class clazz, Object sourceId, Serializable persistedId) {
+        ConcurrentMap<Object, Serializable> classIdentifiers = identifiers.get(clazz);
+
+        if (classIdentifiers == null) {
+            identifiers.putIfAbsent(clazz, new ConcurrentHashMap<Object, Serializable>());
+            classIdentifiers = identifiers.get(clazz);
+        }
+
+        classIdentifiers.put(sourceId, persistedId);
+    }
+
+    public void clear() {
+        identifiers.clear();
+    }
+
+    public int size() {
+        int size = 0;
+
+        for (Map<Object, Serializable> classIdentifiers : identifiers.values()) {
+            size += classIdentifiers.size();
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+/**
+ * Receives the results of an import while it is running, so the importer
+ * does not have to retain the imported objects. When objects are generated in
+ * parallel, the methods may be invoked concurrently for different
+ * dataproviders.
+ *
+ * @author Christian Beikov
+ * @see ImportListenerAdapter
+ */
+public interface ImportListener {
+
+    /**
+     * Is invoked before the first entry of the dataprovider is read.
+     *
+     * @param provider The dataprovider which is imported.
+     */
+    public void importStarted(DataProvider provider);
+
+    /**
+     * Is invoked for every object which was created from an entry of the
+     * dataprovider and saved in the datastorage.
+     *
+     * @param provider The dataprovider of the entry.
+     * @param object The saved object.
+     */
+    public void objectImported(DataProvider provider, Object object);
+
+    /**
+     * Is invoked after the objects of a chunk were committed, which only
+     * happens when the importer commits in chunks.
+     *
+     * @param provider The dataprovider of the entries.
+     * @param chunk The number of the chunk, starting with 1.
+     * @param rows The number of entries which were consumed so far.
+     */
+    public void chunkCommitted(DataProvider provider, long chunk, long rows);
+
+    /**
+     * Is invoked after the last entry of the dataprovider was processed.
+     *
+     * @param provider The dataprovider which was imported.
+     * @param statistics The statistics of the dataprovider.
+     */
+    public void importFinished(DataProvider provider, ImportStatistics statistics);
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+/**
+ * An empty implementation of {@link ImportListener}, so subclasses only have
+ * to override the methods they are interested in.
+ *
+ * @author Christian Beikov
+ */
+public abstract class ImportListenerAdapter implements ImportListener {
+
+    @Override
+    public void importStarted(DataProvider provider) {
+    }
+
+    @Override
+    public void objectImported(DataProvider provider, Object object) {
+    }
+
+    @Override
+    public void chunkCommitted(DataProvider provider, long chunk, long rows) {
+    }
+
+    @Override
+    public void importFinished(DataProvider provider, ImportStatistics statistics) {
+    }
+}
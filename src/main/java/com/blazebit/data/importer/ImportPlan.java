@@ -0,0 +1,240 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import com.blazebit.data.cfg.DataLookup;
+import com.blazebit.data.cfg.DataLookupBy;
+import com.blazebit.data.importer.accessor.PropertyAccessor;
+import com.blazebit.data.importer.converter.ValueConverter;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An import plan holds everything that can be resolved once for a class, the
+ * configuration that applies to it and a set of field names. The plan is
+ * immutable and is cached by the importer, so populating an object for an
+ * entry only has to index into the already resolved properties instead of
+ * scanning the class via reflection for every single entry.
+ *
+ * @author Christian Beikov
+ */
+final class ImportPlan {
+
+    private final Class type;
+    private final Property[] properties;
+    private final Map<String, Property> propertyMap;
+
+    ImportPlan(Class type, Property[] properties) {
+        this.type = type;
+        this.properties = properties;
+        Map<String, Property> map = new HashMap<String, Property>(properties.length * 2);
+
+        for (Property p : properties) {
+            map.put(p.getName(), p);
+        }
+
+        this.propertyMap = Collections.unmodifiableMap(map);
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public Property[] getProperties() {
+        return properties;
+    }
+
+    public Property getProperty(String name) {
+        return propertyMap.get(name);
+    }
+
+    /**
+     * A single resolved property of the plan.
+     */
+    static final class Property {
+
+        private final String name;
+        private final PropertyAccessor accessor;
+        private final Class fieldType;
+        private final Type genericFieldType;
+        private final ValueConverter converter;
+        private final Object config;
+        private final LookupDescriptor lookup;
+
+        Property(String name, PropertyAccessor accessor, ValueConverter converter, Object config, LookupDescriptor lookup) {
+            this.name = name;
+            this.accessor = accessor;
+            this.fieldType = accessor.getType();
+            this.genericFieldType = accessor.getGenericType();
+            this.converter = converter;
+            this.config = config;
+            this.lookup = lookup;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PropertyAccessor getAccessor() {
+            return accessor;
+        }
+
+        public Class getFieldType() {
+            return fieldType;
+        }
+
+        public Type getGenericFieldType() {
+            return genericFieldType;
+        }
+
+        public boolean isParseable() {
+            return converter != null;
+        }
+
+        /**
+         * Returns the converter for the values of this property or null if
+         * the values can't be converted from strings.
+         */
+        public ValueConverter getConverter() {
+            return converter;
+        }
+
+        /**
+         * Returns the configuration element for this property which is either
+         * a {@link com.blazebit.data.cfg.DataProperty}, a {@link DataLookupBy}
+         * or null if the property is not configured.
+         */
+        public Object getConfig() {
+            return config;
+        }
+
+        public LookupDescriptor getLookup() {
+            return lookup;
+        }
+    }
+
+    /**
+     * The resolved form of a {@link DataLookup}, containing the class from which
+     * the objects are looked up and the types of the lookup fields.
+     */
+    static final class LookupDescriptor {
+
+        private final DataLookup lookup;
+        private final String name;
+        private final Class fromClass;
+        private final DataLookupBy[] lookupBy;
+        private final Class[] lookupByTypes;
+        private final ValueConverter[] lookupByConverters;
+        private final boolean[] lookupByParseable;
+
+        LookupDescriptor(DataLookup lookup, Class fromClass, Class[] lookupByTypes, ValueConverter[] lookupByConverters) {
+            this.lookup = lookup;
+            this.fromClass = fromClass;
+            this.lookupBy = lookup.getDataLookupBy().toArray(new DataLookupBy[0]);
+            this.lookupByTypes = lookupByTypes;
+            this.lookupByConverters = lookupByConverters;
+            this.lookupByParseable = new boolean[lookupByTypes.length];
+            StringBuilder sb = new StringBuilder(fromClass.getSimpleName()).append('(');
+
+            for (int i = 0; i < lookupByTypes.length; i++) {
+                lookupByParseable[i] = lookupByConverters[i] != null;
+                sb.append(i == 0 ? "" : ",").append(lookupBy[i].getName());
+            }
+
+            this.name = sb.append(')').toString();
+        }
+
+        /**
+         * Returns the name of the lookup consisting of the class and the
+         * names of the lookup fields.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public DataLookup getLookup() {
+            return lookup;
+        }
+
+        public Class getFromClass() {
+            return fromClass;
+        }
+
+        public DataLookupBy[] getLookupBy() {
+            return lookupBy;
+        }
+
+        public Class[] getLookupByTypes() {
+            return lookupByTypes;
+        }
+
+        public ValueConverter[] getLookupByConverters() {
+            return lookupByConverters;
+        }
+
+        public boolean[] getLookupByParseable() {
+            return lookupByParseable;
+        }
+    }
+
+    /**
+     * The cache key of a plan. The configuration map is compared by identity
+     * because the importer only hands out cached configuration maps.
+     */
+    static final class Key {
+
+        private final Class type;
+        private final Map<String, Object> config;
+        private final Set<String> fieldNames;
+        private final int hash;
+
+        Key(Class type, Map<String, Object> config, Set<String> fieldNames) {
+            this.type = type;
+            this.config = config;
+            this.fieldNames = fieldNames;
+            int h = type.hashCode();
+            h = 31 * h + System.identityHashCode(config);
+            h = 31 * h + fieldNames.hashCode();
+            this.hash = h;
+        }
+
+        static Set<String> fieldNames(Collection<String> simple, Collection<String> complex) {
+            Set<String> names = new HashSet<String>(simple.size() + complex.size());
+            names.addAll(simple);
+            names.addAll(complex);
+            return names;
+        }
+
+        Key immutableCopy() {
+            return new Key(type, config, Collections.unmodifiableSet(new HashSet<String>(fieldNames)));
+        }
+
+        Set<String> getFieldNames() {
+            return fieldNames;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return hash == other.hash && type.equals(other.type) && config == other.config && fieldNames.equals(other.fieldNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
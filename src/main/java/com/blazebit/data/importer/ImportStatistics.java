@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.io.Serializable;
+
+/**
+ * The statistics of the import of a single dataprovider.
+ *
+ * @author Christian Beikov
+ */
+public class ImportStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final String simpleClassName;
+    private long rowsRead;
+    private long rowsPersisted;
+    private long rowsSkipped;
+    private long rowsInserted;
+    private long rowsUpdated;
+    private long rowsUnchanged;
+    private long startTime;
+    private long endTime;
+
+    public ImportStatistics(String simpleClassName) {
+        this.simpleClassName = simpleClassName;
+    }
+
+    public String getSimpleClassName() {
+        return simpleClassName;
+    }
+
+    /**
+     * Returns the number of entries which were read from the dataprovider.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Returns the number of entries for which an object was saved.
+     */
+    public long getRowsPersisted() {
+        return rowsPersisted;
+    }
+
+    /**
+     * Returns the number of entries which were read but not saved.
+     */
+    public long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
+    /**
+     * Returns the number of entries of an incremental import for which a new
+     * object was saved.
+     */
+    public long getRowsInserted() {
+        return rowsInserted;
+    }
+
+    /**
+     * Returns the number of entries of an incremental import which changed
+     * an existing object.
+     */
+    public long getRowsUpdated() {
+        return rowsUpdated;
+    }
+
+    /**
+     * Returns the number of entries of an incremental import which matched
+     * an existing object without changes and were not saved.
+     */
+    public long getRowsUnchanged() {
+        return rowsUnchanged;
+    }
+
+    /**
+     * Returns the time in milliseconds when the import started.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the time in milliseconds when the import finished or 0 if it
+     * did not finish yet.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Returns the duration of the import in milliseconds.
+     */
+    public long getDuration() {
+        return (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+    }
+
+    void started() {
+        startTime = System.currentTimeMillis();
+    }
+
+    void finished() {
+        endTime = System.currentTimeMillis();
+    }
+
+    void rowRead() {
+        rowsRead++;
+    }
+
+    void rowPersisted() {
+        rowsPersisted++;
+    }
+
+    void rowSkipped() {
+        rowsSkipped++;
+    }
+
+    void rowInserted() {
+        rowsInserted++;
+    }
+
+    void rowUpdated() {
+        rowsUpdated++;
+    }
+
+    void rowUnchanged() {
+        rowsUnchanged++;
+    }
+
+    @Override
+    public String toString() {
+        String incremental = rowsInserted + rowsUpdated + rowsUnchanged == 0 ? "" : ", inserted=" + rowsInserted + ", updated=" + rowsUpdated + ", unchanged=" + rowsUnchanged;
+        return "ImportStatistics[" + simpleClassName + ": read=" + rowsRead + ", persisted=" + rowsPersisted + ", skipped=" + rowsSkipped + incremental + ", duration=" + getDuration() + "ms]";
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * A set of long values with open addressing, which needs 8 to 16 bytes per
+ * value instead of an object per value. The table can be allocated outside
+ * of the heap. The value 0 marks a free slot and can't be added.
+ *
+ * @author Christian Beikov
+ */
+class LongHashSet {
+
+    private static final int MAX_CAPACITY = 1 << 28;
+    private final boolean direct;
+    private LongBuffer table;
+    private int mask;
+    private int size;
+
+    public LongHashSet(int initialCapacity, boolean direct) {
+        int capacity = 16;
+
+        while (capacity < initialCapacity * 2 && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+
+        this.direct = direct;
+        this.table = allocate(capacity, direct);
+        this.mask = capacity - 1;
+    }
+
+    private static LongBuffer allocate(int capacity, boolean direct) {
+        if (direct) {
+            return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        return LongBuffer.allocate(capacity);
+    }
+
+    /**
+     * Adds the value to the set.
+     *
+     * @return True if the value was not contained before
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("0 can't be added");
+        }
+        if (size * 2 >= mask + 1) {
+            grow();
+        }
+
+        int index = indexOf(table, mask, value);
+
+        if (table.get(index) == value) {
+            return false;
+        }
+
+        table.put(index, value);
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return value != 0 && table.get(indexOf(table, mask, value)) == value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of the value or the free slot where it belongs.
+     */
+    private static int indexOf(LongBuffer table, int mask, long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        int index = (int) (h ^ (h >>> 32)) & mask;
+        long current;
+
+        while ((current = table.get(index)) != 0 && current != value) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private void grow() {
+        int capacity = (mask + 1) << 1;
+
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("The set can't hold more than " + size + " values");
+        }
+
+        LongBuffer newTable = allocate(capacity, direct);
+        int newMask = capacity - 1;
+
+        for (int i = 0; i <= mask; i++) {
+            long value = table.get(i);
+
+            if (value != 0) {
+                newTable.put(indexOf(newTable, newMask, value), value);
+            }
+        }
+
+        table = newTable;
+        mask = newMask;
+    }
+}
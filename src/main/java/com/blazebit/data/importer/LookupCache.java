@@ -0,0 +1,185 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the objects which were found by a lookup, keyed by the class and the
+ * values of the lookup fields. The importer also puts the objects it saved
+ * into the cache, so lookups for objects which were generated within the same
+ * run don't have to query the datastorage. This class is thread safe.
+ *
+ * @author Christian Beikov
+ */
+public class LookupCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * Decides which entry is removed when the cache is full.
+     */
+    public static enum EvictionPolicy {
+
+        /**
+         * Removes the least recently used entry.
+         */
+        LRU,
+        /**
+         * Removes the oldest entry.
+         */
+        FIFO,
+        /**
+         * Never removes entries, the maximum size is ignored.
+         */
+        NONE
+    }
+
+    private final int maxSize;
+    private final EvictionPolicy evictionPolicy;
+    private final Map<Key, Serializable> entries;
+    private long hitCount;
+    private long missCount;
+
+    public LookupCache() {
+        this(DEFAULT_MAX_SIZE, EvictionPolicy.LRU);
+    }
+
+    public LookupCache(int maxSize, EvictionPolicy evictionPolicy) {
+        if (evictionPolicy == null) {
+            throw new NullPointerException();
+        }
+        if (maxSize < 1 && evictionPolicy != EvictionPolicy.NONE) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+        this.evictionPolicy = evictionPolicy;
+        this.entries = new LinkedHashMap<Key, Serializable>(16, 0.75f, evictionPolicy == EvictionPolicy.LRU) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Serializable> eldest) {
+                return LookupCache.this.evictionPolicy != EvictionPolicy.NONE && size() > LookupCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached object of the given class which has the given values.
+     *
+     * @param clazz The class of the object.
+     * @param valueMap The values of the lookup fields.
+     * @return The cached object or null
+     */
+    public synchronized Serializable get(Class clazz, Map<String, Serializable> valueMap) {
+        Serializable object = entries.get(new Key(clazz, valueMap));
+
+        if (object == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+
+        return object;
+    }
+
+    /**
+     * Returns whether an object of the given class with the given values is
+     * cached. In contrast to {@link #get(Class, Map)} this neither counts as
+     * hit or miss nor changes the order of the entries.
+     *
+     * @param clazz The class of the object.
+     * @param valueMap The values of the lookup fields.
+     * @return True if the object is cached
+     */
+    public synchronized boolean contains(Class clazz, Map<String, Serializable> valueMap) {
+        return entries.containsKey(new Key(clazz, valueMap));
+    }
+
+    /**
+     * Puts the object of the given class with the given values into the cache.
+     *
+     * @param clazz The class of the object.
+     * @param valueMap The values of the lookup fields.
+     * @param object The object to cache.
+     */
+    public synchronized void put(Class clazz, Map<String, Serializable> valueMap, Serializable object) {
+        entries.put(new Key(clazz, new HashMap<String, Serializable>(valueMap)), object);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the ratio of the cache hits to all requests.
+     *
+     * @return The hit rate between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LookupCache[size=" + entries.size() + ", hits=" + hitCount + ", misses=" + missCount + "]";
+    }
+
+    private static final class Key {
+
+        private final Class clazz;
+        private final Map<String, Serializable> valueMap;
+        private final int hash;
+
+        public Key(Class clazz, Map<String, Serializable> valueMap) {
+            this.clazz = clazz;
+            this.valueMap = valueMap;
+            this.hash = 31 * clazz.hashCode() + valueMap.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return hash == other.hash && clazz.equals(other.clazz) && valueMap.equals(other.valueMap);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+/**
+ * Is thrown when a lookup refers to an object of which the row was rejected.
+ *
+ * @author Christian Beikov
+ */
+class RejectedDependencyException extends DataDependencyException{
+
+    public RejectedDependencyException(String message) {
+        super(message);
+    }
+    
+}
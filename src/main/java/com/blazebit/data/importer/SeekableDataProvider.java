@@ -0,0 +1,30 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+/**
+ * A dataprovider which can be positioned at an entry, so an interrupted
+ * import can be resumed without reading the entries which were already
+ * imported.
+ *
+ * @author Christian Beikov
+ */
+public interface SeekableDataProvider extends DataProvider {
+
+    /**
+     * Returns the number of entries which were returned by
+     * {@link #next()} so far.
+     * 
+     * @return The position of the next entry
+     */
+    public long getPosition();
+
+    /**
+     * Positions the dataprovider so that the next call to {@link #next()}
+     * returns the entry with the given zero based index.
+     * 
+     * @param position The index of the next entry.
+     */
+    public void seek(long position);
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.accessor;
+
+/**
+ * This exception is thrown when a property could not be found, read or written.
+ *
+ * @author Christian Beikov
+ */
+public class PropertyAccessException extends RuntimeException {
+
+    public PropertyAccessException(Throwable cause) {
+        super(cause);
+    }
+
+    public PropertyAccessException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public PropertyAccessException(String message) {
+        super(message);
+    }
+
+    public PropertyAccessException() {
+    }
+    
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.accessor;
+
+import java.lang.reflect.Type;
+
+/**
+ * A property accessor reads and writes a single property of objects of a
+ * specific class. Accessors are resolved once per property and are meant to
+ * be reused for every object, so implementations should do all the expensive
+ * work on creation. The primitive setters allow implementations to assign
+ * primitive values without boxing them.
+ *
+ * @author Christian Beikov
+ */
+public interface PropertyAccessor {
+
+    /**
+     * Returns the name of the property.
+     * 
+     * @return The property name
+     */
+    public String getName();
+
+    /**
+     * Returns the type of the property.
+     * 
+     * @return The property type
+     */
+    public Class getType();
+
+    /**
+     * Returns the generic type of the property which can be used to determine
+     * the element types of collections.
+     * 
+     * @return The generic property type
+     */
+    public Type getGenericType();
+
+    /**
+     * Returns true if the property can be read by this accessor.
+     * 
+     * @return True if readable
+     */
+    public boolean isReadable();
+
+    /**
+     * Returns true if the property can be written by this accessor.
+     * 
+     * @return True if writable
+     */
+    public boolean isWritable();
+
+    /**
+     * Returns the value of the property of the given object.
+     * 
+     * @param target The object from which the value should be read.
+     * @return The value of the property
+     * @throws PropertyAccessException Is thrown when the value could not be read.
+     */
+    public Object get(Object target);
+
+    /**
+     * Sets the value of the property of the given object.
+     * 
+     * @param target The object on which the value should be set.
+     * @param value The value to set.
+     * @throws PropertyAccessException Is thrown when the value could not be set.
+     */
+    public void set(Object target, Object value);
+
+    /**
+     * Sets a primitive value. Implementations may avoid boxing the value,
+     * otherwise this is the same as {@link #set(Object, Object)}.
+     * 
+     * @param target The object on which the value should be set.
+     * @param value The value to set.
+     * @throws PropertyAccessException Is thrown when the value could not be set.
+     */
+    public void setInt(Object target, int value);
+
+    public void setLong(Object target, long value);
+
+    public void setBoolean(Object target, boolean value);
+}
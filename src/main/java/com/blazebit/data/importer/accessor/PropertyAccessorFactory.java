@@ -0,0 +1,34 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.accessor;
+
+/**
+ * A property accessor factory creates the accessors which are used by the
+ * importer to populate objects. Implementations are expected to cache the
+ * accessors, since the importer asks for them very frequently.
+ *
+ * @author Christian Beikov
+ */
+public interface PropertyAccessorFactory {
+
+    /**
+     * Returns the accessor for the property with the given name. The name is
+     * matched case insensitive, like the setters are matched for field names
+     * of a dataprovider.
+     * 
+     * @param clazz The class which contains the property.
+     * @param propertyName The name of the property.
+     * @return The accessor for the property
+     * @throws PropertyAccessException Is thrown when the class has no such property.
+     */
+    public PropertyAccessor getAccessor(Class clazz, String propertyName);
+
+    /**
+     * Returns the accessors for all readable properties of the given class.
+     * 
+     * @param clazz The class of which the accessors should be returned.
+     * @return The accessors for all readable properties
+     */
+    public PropertyAccessor[] getReadableAccessors(Class clazz);
+}
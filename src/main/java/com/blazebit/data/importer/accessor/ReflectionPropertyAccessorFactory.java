@@ -0,0 +1,312 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.accessor;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Default implementation of a property accessor factory which uses setters
+ * and getters of a class and falls back to direct field access when no
+ * accessor method exists. The reflection objects are looked up once per
+ * class and made accessible, so the access checks are skipped on every
+ * invocation. Primitive values are assigned without boxing when the property
+ * is accessed via its field.
+ *
+ * @author Christian Beikov
+ */
+public class ReflectionPropertyAccessorFactory implements PropertyAccessorFactory {
+
+    private final ConcurrentMap<Class, ClassAccessors> classAccessors = new ConcurrentHashMap<Class, ClassAccessors>();
+
+    @Override
+    public PropertyAccessor getAccessor(Class clazz, String propertyName) {
+        if (propertyName == null) {
+            throw new PropertyAccessException("Property not found for field null on class " + clazz.getSimpleName());
+        }
+
+        return getClassAccessors(clazz).getAccessor(propertyName);
+    }
+
+    @Override
+    public PropertyAccessor[] getReadableAccessors(Class clazz) {
+        return getClassAccessors(clazz).getReadableAccessors();
+    }
+
+    private ClassAccessors getClassAccessors(Class clazz) {
+        ClassAccessors accessors = classAccessors.get(clazz);
+
+        if (accessors == null) {
+            accessors = new ClassAccessors(clazz);
+            ClassAccessors existing = classAccessors.putIfAbsent(clazz, accessors);
+
+            if (existing != null) {
+                accessors = existing;
+            }
+        }
+
+        return accessors;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static <T extends AccessibleObject> T accessible(T member) {
+        if (member != null) {
+            try {
+                member.setAccessible(true);
+            } catch (SecurityException ex) {
+                // Access checks will be done on every invocation then
+            }
+        }
+
+        return member;
+    }
+
+    /**
+     * Holds the accessor methods and fields of a class, keyed by their lower
+     * case property name.
+     */
+    private static class ClassAccessors {
+
+        private final Class clazz;
+        private final Map<String, Method> setters = new HashMap<String, Method>();
+        private final Map<String, Method> getters = new HashMap<String, Method>();
+        private final Map<String, Field> fields = new HashMap<String, Field>();
+        private final ConcurrentMap<String, PropertyAccessor> accessors = new ConcurrentHashMap<String, PropertyAccessor>();
+        private final PropertyAccessor[] readableAccessors;
+
+        public ClassAccessors(Class clazz) {
+            this.clazz = clazz;
+            List<String> readableNames = new ArrayList<String>();
+
+            for (Method m : clazz.getMethods()) {
+                if (Modifier.isStatic(m.getModifiers())) {
+                    continue;
+                }
+
+                String name = m.getName();
+
+                if (name.startsWith("set") && name.length() > 3 && m.getParameterTypes().length == 1) {
+                    String key = key(name.substring(3));
+
+                    if (!setters.containsKey(key)) {
+                        setters.put(key, m);
+                    }
+                } else if (m.getParameterTypes().length == 0 && !"getClass".equals(name)) {
+                    String propertyName = null;
+
+                    if (name.startsWith("get") && name.length() > 3) {
+                        propertyName = name.substring(3);
+                    } else if (name.startsWith("is") && name.length() > 2) {
+                        propertyName = name.substring(2);
+                    }
+
+                    if (propertyName != null && !getters.containsKey(key(propertyName))) {
+                        getters.put(key(propertyName), m);
+                        readableNames.add(propertyName.substring(0, 1).toLowerCase(Locale.ENGLISH) + propertyName.substring(1));
+                    }
+                }
+            }
+
+            for (Class c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(f.getModifiers()) && !fields.containsKey(key(f.getName()))) {
+                        fields.put(key(f.getName()), f);
+                    }
+                }
+            }
+
+            readableAccessors = new PropertyAccessor[readableNames.size()];
+
+            for (int i = 0; i < readableAccessors.length; i++) {
+                readableAccessors[i] = getAccessor(readableNames.get(i));
+            }
+        }
+
+        public PropertyAccessor getAccessor(String propertyName) {
+            String key = key(propertyName);
+            PropertyAccessor accessor = accessors.get(key);
+
+            if (accessor == null) {
+                Method setter = setters.get(key);
+                Method getter = getters.get(key);
+                Field field = fields.get(key);
+
+                if (setter == null && getter == null && field == null) {
+                    throw new PropertyAccessException("Property not found for field " + propertyName + " on class " + clazz.getSimpleName());
+                }
+
+                accessor = new ReflectionPropertyAccessor(field != null ? field.getName() : propertyName, getter, setter, field);
+                PropertyAccessor existing = accessors.putIfAbsent(key, accessor);
+
+                if (existing != null) {
+                    accessor = existing;
+                }
+            }
+
+            return accessor;
+        }
+
+        public PropertyAccessor[] getReadableAccessors() {
+            return readableAccessors;
+        }
+    }
+
+    /**
+     * Accesses a property through its accessor methods or, if they are
+     * absent, through its field.
+     */
+    private static class ReflectionPropertyAccessor implements PropertyAccessor {
+
+        private final String name;
+        private final Class type;
+        private final Type genericType;
+        private final Method getter;
+        private final Method setter;
+        private final Field readField;
+        private final Field writeField;
+
+        public ReflectionPropertyAccessor(String name, Method getter, Method setter, Field field) {
+            this.name = name;
+            this.getter = accessible(getter);
+            this.setter = accessible(setter);
+            this.readField = getter == null ? accessible(field) : null;
+            this.writeField = setter == null && field != null && !Modifier.isFinal(field.getModifiers()) ? accessible(field) : null;
+
+            if (setter != null) {
+                this.type = setter.getParameterTypes()[0];
+                this.genericType = setter.getGenericParameterTypes()[0];
+            } else if (getter != null) {
+                this.type = getter.getReturnType();
+                this.genericType = getter.getGenericReturnType();
+            } else {
+                this.type = field.getType();
+                this.genericType = field.getGenericType();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Class getType() {
+            return type;
+        }
+
+        @Override
+        public Type getGenericType() {
+            return genericType;
+        }
+
+        @Override
+        public boolean isReadable() {
+            return getter != null || readField != null;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return setter != null || writeField != null;
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                if (getter != null) {
+                    return getter.invoke(target);
+                } else if (readField != null) {
+                    return readField.get(target);
+                }
+            } catch (IllegalAccessException ex) {
+                throw new PropertyAccessException("Could not read property " + name, ex);
+            } catch (InvocationTargetException ex) {
+                throw new PropertyAccessException("Could not read property " + name, ex.getCause());
+            }
+
+            throw new PropertyAccessException("Property " + name + " is not readable");
+        }
+
+        @Override
+        public void set(Object target, Object value) {
+            try {
+                if (setter != null) {
+                    setter.invoke(target, value);
+                    return;
+                } else if (writeField != null) {
+                    writeField.set(target, value);
+                    return;
+                }
+            } catch (IllegalAccessException ex) {
+                throw new PropertyAccessException("Could not write property " + name, ex);
+            } catch (InvocationTargetException ex) {
+                throw new PropertyAccessException("Could not write property " + name, ex.getCause());
+            }
+
+            throw new PropertyAccessException("Property " + name + " is not writable");
+        }
+
+        /*
+         * Only primitive fields can be written without boxing. Setters are
+         * invoked with Method.invoke, which needs the boxed value, since
+         * Java 6 has no method handles. Generated accessors could avoid that.
+         */
+        @Override
+        public void setInt(Object target, int value) {
+            if (writeField != null && writeField.getType().isPrimitive()) {
+                try {
+                    writeField.setInt(target, value);
+                } catch (IllegalAccessException ex) {
+                    throw new PropertyAccessException("Could not write property " + name, ex);
+                }
+            } else {
+                set(target, Integer.valueOf(value));
+            }
+        }
+
+        @Override
+        public void setLong(Object target, long value) {
+            if (writeField != null && writeField.getType().isPrimitive()) {
+                try {
+                    writeField.setLong(target, value);
+                } catch (IllegalAccessException ex) {
+                    throw new PropertyAccessException("Could not write property " + name, ex);
+                }
+            } else {
+                set(target, Long.valueOf(value));
+            }
+        }
+
+        @Override
+        public void setBoolean(Object target, boolean value) {
+            if (writeField != null && writeField.getType().isPrimitive()) {
+                try {
+                    writeField.setBoolean(target, value);
+                } catch (IllegalAccessException ex) {
+                    throw new PropertyAccessException("Could not write property " + name, ex);
+                }
+            } else {
+                set(target, Boolean.valueOf(value));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "PropertyAccessor[" + name + "]";
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.checkpoint;
+
+import java.io.IOException;
+
+/**
+ * Stores the checkpoint of an import durably, so the import can be resumed
+ * after a failure.
+ *
+ * @author Christian Beikov
+ */
+public interface CheckpointStore {
+
+    /**
+     * Returns the last stored checkpoint.
+     * 
+     * @return The checkpoint, an empty checkpoint if none was stored
+     * @throws IOException 
+     */
+    public ImportCheckpoint load() throws IOException;
+
+    /**
+     * Stores the checkpoint, replacing the previously stored one. Either the
+     * new or the previous checkpoint must survive a crash during the save.
+     * 
+     * @param checkpoint The checkpoint to store.
+     * @throws IOException 
+     */
+    public void save(ImportCheckpoint checkpoint) throws IOException;
+
+    /**
+     * Removes the stored checkpoint, which is done when an import completed.
+     * 
+     * @throws IOException 
+     */
+    public void clear() throws IOException;
+}
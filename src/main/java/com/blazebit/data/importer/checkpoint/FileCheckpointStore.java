@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.checkpoint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Stores the checkpoint as properties file. The checkpoint is written to a
+ * temporary file which then replaces the previous file, so a crash while
+ * writing leaves the previous checkpoint intact.
+ *
+ * @author Christian Beikov
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private static final String COMPLETED = "completed";
+    private static final String ROWS_PREFIX = "rows.";
+    private static final String CHUNK_PREFIX = "chunk.";
+    private final File file;
+    private final File tempFile;
+
+    public FileCheckpointStore(String fileName) {
+        this(new File(fileName));
+    }
+
+    public FileCheckpointStore(File file) {
+        if (file == null) {
+            throw new NullPointerException();
+        }
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized ImportCheckpoint load() throws IOException {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+
+        if (!file.exists()) {
+            return checkpoint;
+        }
+
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(ROWS_PREFIX)) {
+                String simpleClassName = name.substring(ROWS_PREFIX.length());
+                String chunk = properties.getProperty(CHUNK_PREFIX + simpleClassName, "0");
+                checkpoint.setPosition(simpleClassName, Long.parseLong(properties.getProperty(name)), Long.parseLong(chunk));
+            }
+        }
+
+        for (String simpleClassName : properties.getProperty(COMPLETED, "").split(",")) {
+            if (simpleClassName.length() > 0) {
+                checkpoint.setCompleted(simpleClassName);
+            }
+        }
+
+        return checkpoint;
+    }
+
+    @Override
+    public synchronized void save(ImportCheckpoint checkpoint) throws IOException {
+        Properties properties = new Properties();
+        StringBuilder completed = new StringBuilder();
+
+        for (String simpleClassName : checkpoint.getCompleted()) {
+            if (completed.length() > 0) {
+                completed.append(',');
+            }
+            completed.append(simpleClassName);
+        }
+
+        properties.setProperty(COMPLETED, completed.toString());
+
+        for (String simpleClassName : checkpoint.getStarted()) {
+            properties.setProperty(ROWS_PREFIX + simpleClassName, Long.toString(checkpoint.getRows(simpleClassName)));
+            properties.setProperty(CHUNK_PREFIX + simpleClassName, Long.toString(checkpoint.getChunk(simpleClassName)));
+        }
+
+        FileOutputStream out = new FileOutputStream(tempFile);
+
+        try {
+            properties.store(out, "Import checkpoint");
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        // Renaming onto an existing file fails on some platforms
+        if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+            throw new IOException("Could not replace the checkpoint file " + file);
+        }
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete the checkpoint file " + file);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.checkpoint;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The progress of an import. For every dataprovider, identified by its simple
+ * class name, the number of consumed entries and the number of the last
+ * committed chunk are recorded until the generation of the class is
+ * completed. This class is thread safe.
+ *
+ * @author Christian Beikov
+ */
+public class ImportCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final Set<String> completed = new LinkedHashSet<String>();
+    private final Map<String, Long> rows = new LinkedHashMap<String, Long>();
+    private final Map<String, Long> chunks = new HashMap<String, Long>();
+
+    public synchronized boolean isCompleted(String simpleClassName) {
+        return completed.contains(simpleClassName);
+    }
+
+    /**
+     * Marks the generation of the class as completed and removes its position.
+     * 
+     * @param simpleClassName The simple class name of the dataprovider.
+     */
+    public synchronized void setCompleted(String simpleClassName) {
+        completed.add(simpleClassName);
+        rows.remove(simpleClassName);
+        chunks.remove(simpleClassName);
+    }
+
+    /**
+     * Returns the number of entries of the dataprovider which were imported
+     * and committed.
+     * 
+     * @param simpleClassName The simple class name of the dataprovider.
+     * @return The number of entries, 0 if nothing was recorded
+     */
+    public synchronized long getRows(String simpleClassName) {
+        Long value = rows.get(simpleClassName);
+        return value == null ? 0 : value;
+    }
+
+    public synchronized long getChunk(String simpleClassName) {
+        Long value = chunks.get(simpleClassName);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Records the position of the dataprovider after a chunk was committed.
+     * 
+     * @param simpleClassName The simple class name of the dataprovider.
+     * @param rows The number of consumed entries.
+     * @param chunk The number of the committed chunk.
+     */
+    public synchronized void setPosition(String simpleClassName, long rows, long chunk) {
+        this.rows.put(simpleClassName, rows);
+        this.chunks.put(simpleClassName, chunk);
+    }
+
+    public synchronized Set<String> getCompleted() {
+        return new LinkedHashSet<String>(completed);
+    }
+
+    public synchronized Set<String> getStarted() {
+        return new LinkedHashSet<String>(rows.keySet());
+    }
+
+    public synchronized boolean isEmpty() {
+        return completed.isEmpty() && rows.isEmpty();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ImportCheckpoint[completed=" + completed + ", rows=" + rows + "]";
+    }
+}
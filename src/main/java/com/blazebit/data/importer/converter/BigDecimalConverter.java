@@ -0,0 +1,31 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+
+/**
+ * Converts values to decimals. A comma is accepted as decimal separator if the
+ * value doesn't contain a point.
+ *
+ * @author Christian Beikov
+ */
+public class BigDecimalConverter implements ValueConverter<BigDecimal> {
+
+    @Override
+    public BigDecimal convert(String value) throws ParseException {
+        String s = value.trim();
+
+        if (s.indexOf('.') < 0) {
+            s = s.replace(',', '.');
+        }
+
+        try {
+            return new BigDecimal(s);
+        } catch (NumberFormatException ex) {
+            throw new ParseException("Invalid decimal: " + value, 0);
+        }
+    }
+}
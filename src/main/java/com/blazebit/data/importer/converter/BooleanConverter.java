@@ -0,0 +1,24 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import java.text.ParseException;
+
+/**
+ * Converts values to booleans, every value other than <code>true</code>
+ * ignoring case is false. Values can also be converted to primitives.
+ *
+ * @author Christian Beikov
+ */
+public class BooleanConverter implements ValueConverter<Boolean> {
+
+    @Override
+    public Boolean convert(String value) throws ParseException {
+        return Boolean.valueOf(convertBoolean(value));
+    }
+
+    public boolean convertBoolean(String value) throws ParseException {
+        return Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * Converts values to dates and calendars with the given patterns. The patterns
+ * are tried in order, a pattern which matches the whole value wins over one
+ * which only matches the beginning. The converter is immutable, the formats
+ * are held per thread since {@link SimpleDateFormat} is not thread safe.
+ *
+ * @param <T> The type of the converted values
+ * @author Christian Beikov
+ */
+public class DateConverter<T> implements ValueConverter<T> {
+
+    private final Class<T> type;
+    private final String[] patterns;
+    private final ThreadLocal<DateFormat[]> formats = new ThreadLocal<DateFormat[]>() {
+
+        @Override
+        protected DateFormat[] initialValue() {
+            DateFormat[] f = new DateFormat[patterns.length];
+
+            for (int i = 0; i < patterns.length; i++) {
+                f[i] = new SimpleDateFormat(patterns[i]);
+            }
+
+            return f;
+        }
+    };
+
+    /**
+     * Creates a converter for the given type.
+     *
+     * @param type One of {@link Date}, {@link java.sql.Date}, {@link java.sql.Time},
+     * {@link java.sql.Timestamp}, {@link Calendar} or {@link GregorianCalendar}.
+     * @param patterns The patterns as used by {@link SimpleDateFormat}.
+     */
+    public DateConverter(Class<T> type, String... patterns) {
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("At least one pattern is required");
+        }
+
+        this.type = type;
+        this.patterns = patterns.clone();
+    }
+
+    @Override
+    public T convert(String value) throws ParseException {
+        String s = value.trim();
+        Date partialMatch = null;
+
+        for (DateFormat format : formats.get()) {
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(s, position);
+
+            if (date != null) {
+                if (position.getIndex() == s.length()) {
+                    return toType(date);
+                } else if (partialMatch == null) {
+                    partialMatch = date;
+                }
+            }
+        }
+
+        if (partialMatch == null) {
+            throw new ParseException("Invalid date: " + value, 0);
+        }
+
+        return toType(partialMatch);
+    }
+
+    private T toType(Date date) {
+        if (Calendar.class.isAssignableFrom(type)) {
+            Calendar calendar = new GregorianCalendar();
+            calendar.setTime(date);
+            return type.cast(calendar);
+        } else if (java.sql.Date.class.equals(type)) {
+            return type.cast(new java.sql.Date(date.getTime()));
+        } else if (java.sql.Time.class.equals(type)) {
+            return type.cast(new java.sql.Time(date.getTime()));
+        } else if (java.sql.Timestamp.class.equals(type)) {
+            return type.cast(new java.sql.Timestamp(date.getTime()));
+        }
+
+        return type.cast(date);
+    }
+}
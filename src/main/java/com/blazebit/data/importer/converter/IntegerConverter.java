@@ -0,0 +1,28 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import java.text.ParseException;
+
+/**
+ * Converts values to integers. Values can also be converted to primitives,
+ * so they don't have to be boxed.
+ *
+ * @author Christian Beikov
+ */
+public class IntegerConverter implements ValueConverter<Integer> {
+
+    @Override
+    public Integer convert(String value) throws ParseException {
+        return Integer.valueOf(convertInt(value));
+    }
+
+    public int convertInt(String value) throws ParseException {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new ParseException("Invalid integer: " + value, 0);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import java.text.ParseException;
+
+/**
+ * Converts values to longs. Values can also be converted to primitives, so
+ * they don't have to be boxed.
+ *
+ * @author Christian Beikov
+ */
+public class LongConverter implements ValueConverter<Long> {
+
+    @Override
+    public Long convert(String value) throws ParseException {
+        return Long.valueOf(convertLong(value));
+    }
+
+    public long convertLong(String value) throws ParseException {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new ParseException("Invalid long: " + value, 0);
+        }
+    }
+}
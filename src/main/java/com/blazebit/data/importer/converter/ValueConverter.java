@@ -0,0 +1,26 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import java.text.ParseException;
+
+/**
+ * Converts the string values of dataprovider entries into the type of a
+ * property. Implementations must be thread safe, since a converter is shared
+ * by all properties of its type.
+ *
+ * @param <T> The type of the converted values
+ * @author Christian Beikov
+ */
+public interface ValueConverter<T> {
+
+    /**
+     * Converts the given value.
+     *
+     * @param value The value to convert, never null.
+     * @return The converted value
+     * @throws ParseException Is thrown when the value has an invalid format.
+     */
+    public T convert(String value) throws ParseException;
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import com.blazebit.text.FormatUtils;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of the converters for the types of the properties. The
+ * converter of a type is resolved once and cached afterwards. Converters for
+ * additional types can be registered, registered converters take precedence
+ * over the default ones. Types without a specialized converter which are
+ * parseable by {@link FormatUtils} are converted by it. This class is thread
+ * safe.
+ *
+ * @author Christian Beikov
+ */
+public class ValueConverterRegistry {
+
+    public static final String DEFAULT_DATE_PATTERN = "dd.MM.yyyy";
+    public static final String DEFAULT_CALENDAR_PATTERN = "dd.MM.yyyy HH:mm:ss";
+    // Marks types which can't be converted, since the map can't hold null values
+    private static final ValueConverter NOT_CONVERTIBLE = new ValueConverter<Object>() {
+
+        @Override
+        public Object convert(String value) throws ParseException {
+            throw new UnsupportedOperationException();
+        }
+    };
+    private final ConcurrentMap<Class, ValueConverter> converters = new ConcurrentHashMap<Class, ValueConverter>();
+
+    public ValueConverterRegistry() {
+        this(DEFAULT_DATE_PATTERN, DEFAULT_CALENDAR_PATTERN);
+    }
+
+    /**
+     * Creates a registry which parses dates and calendars with the given
+     * patterns. Values which don't match the calendar pattern are parsed with
+     * the date pattern and vice versa for sql dates.
+     *
+     * @param datePattern The pattern for dates.
+     * @param calendarPattern The pattern for dates with time.
+     */
+    public ValueConverterRegistry(String datePattern, String calendarPattern) {
+        register(String.class, new ValueConverter<String>() {
+
+            @Override
+            public String convert(String value) {
+                return value;
+            }
+        });
+        register(Integer.class, new IntegerConverter());
+        register(Long.class, new LongConverter());
+        register(Boolean.class, new BooleanConverter());
+        register(BigDecimal.class, new BigDecimalConverter());
+        register(Short.class, new ValueConverter<Short>() {
+
+            @Override
+            public Short convert(String value) throws ParseException {
+                try {
+                    return Short.valueOf(value.trim());
+                } catch (NumberFormatException ex) {
+                    throw new ParseException("Invalid short: " + value, 0);
+                }
+            }
+        });
+        register(Byte.class, new ValueConverter<Byte>() {
+
+            @Override
+            public Byte convert(String value) throws ParseException {
+                try {
+                    return Byte.valueOf(value.trim());
+                } catch (NumberFormatException ex) {
+                    throw new ParseException("Invalid byte: " + value, 0);
+                }
+            }
+        });
+        register(Double.class, new ValueConverter<Double>() {
+
+            @Override
+            public Double convert(String value) throws ParseException {
+                try {
+                    return Double.valueOf(value.trim());
+                } catch (NumberFormatException ex) {
+                    throw new ParseException("Invalid double: " + value, 0);
+                }
+            }
+        });
+        register(Float.class, new ValueConverter<Float>() {
+
+            @Override
+            public Float convert(String value) throws ParseException {
+                try {
+                    return Float.valueOf(value.trim());
+                } catch (NumberFormatException ex) {
+                    throw new ParseException("Invalid float: " + value, 0);
+                }
+            }
+        });
+        register(BigInteger.class, new ValueConverter<BigInteger>() {
+
+            @Override
+            public BigInteger convert(String value) throws ParseException {
+                try {
+                    return new BigInteger(value.trim());
+                } catch (NumberFormatException ex) {
+                    throw new ParseException("Invalid integer: " + value, 0);
+                }
+            }
+        });
+        register(Character.class, new ValueConverter<Character>() {
+
+            @Override
+            public Character convert(String value) throws ParseException {
+                if (value.length() != 1) {
+                    throw new ParseException("Invalid character: " + value, 0);
+                }
+
+                return Character.valueOf(value.charAt(0));
+            }
+        });
+        register(Date.class, new DateConverter<Date>(Date.class, calendarPattern, datePattern));
+        register(java.sql.Timestamp.class, new DateConverter<java.sql.Timestamp>(java.sql.Timestamp.class, calendarPattern, datePattern));
+        register(java.sql.Time.class, new DateConverter<java.sql.Time>(java.sql.Time.class, calendarPattern, datePattern));
+        register(java.sql.Date.class, new DateConverter<java.sql.Date>(java.sql.Date.class, datePattern, calendarPattern));
+        register(Calendar.class, new DateConverter<Calendar>(Calendar.class, calendarPattern, datePattern));
+        register(GregorianCalendar.class, new DateConverter<GregorianCalendar>(GregorianCalendar.class, calendarPattern, datePattern));
+    }
+
+    /**
+     * Registers the converter for the given type.
+     *
+     * @param type The type of the converted values.
+     * @param converter The converter for the type.
+     */
+    public <T> void register(Class<T> type, ValueConverter<? extends T> converter) {
+        if (type == null || converter == null) {
+            throw new NullPointerException();
+        }
+
+        converters.put(type, converter);
+    }
+
+    /**
+     * Returns the converter for the given type.
+     *
+     * @param type The type of the values.
+     * @return The converter or null if values of the type can't be converted
+     */
+    public ValueConverter getConverter(Class type) {
+        if (type.isPrimitive()) {
+            type = toWrapper(type);
+        }
+
+        ValueConverter converter = converters.get(type);
+
+        if (converter == null) {
+            converter = resolve(type);
+            ValueConverter existing = converters.putIfAbsent(type, converter);
+
+            if (existing != null) {
+                converter = existing;
+            }
+        }
+
+        return converter == NOT_CONVERTIBLE ? null : converter;
+    }
+
+    public boolean isConvertible(Class type) {
+        return getConverter(type) != null;
+    }
+
+    private static ValueConverter resolve(final Class type) {
+        if (type.isEnum()) {
+            return new ValueConverter<Object>() {
+
+                @Override
+                public Object convert(String value) throws ParseException {
+                    try {
+                        return Enum.valueOf(type, value.trim());
+                    } catch (IllegalArgumentException ex) {
+                        throw new ParseException("Invalid constant of " + type.getName() + ": " + value, 0);
+                    }
+                }
+            };
+        } else if (FormatUtils.isParseableType(type)) {
+            return new ValueConverter<Object>() {
+
+                @Override
+                public Object convert(String value) throws ParseException {
+                    return FormatUtils.getParsedValue((Class<Serializable>) type, value);
+                }
+            };
+        }
+
+        return NOT_CONVERTIBLE;
+    }
+
+    private static Class toWrapper(Class type) {
+        if (Integer.TYPE.equals(type)) {
+            return Integer.class;
+        } else if (Long.TYPE.equals(type)) {
+            return Long.class;
+        } else if (Boolean.TYPE.equals(type)) {
+            return Boolean.class;
+        } else if (Double.TYPE.equals(type)) {
+            return Double.class;
+        } else if (Float.TYPE.equals(type)) {
+            return Float.class;
+        } else if (Short.TYPE.equals(type)) {
+            return Short.class;
+        } else if (Byte.TYPE.equals(type)) {
+            return Byte.class;
+        } else if (Character.TYPE.equals(type)) {
+            return Character.class;
+        }
+
+        return type;
+    }
+}
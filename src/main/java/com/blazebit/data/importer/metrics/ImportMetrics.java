@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.metrics;
+
+/**
+ * The instrumentation interface of the importer and the datastorages. The
+ * default implementation {@link InMemoryImportMetrics} keeps the numbers in
+ * memory, other implementations can forward them to an external metrics
+ * library. Implementations must be thread safe and fast, since they are
+ * invoked several times for every entry.
+ *
+ * @author Christian Beikov
+ */
+public interface ImportMetrics {
+
+    /**
+     * Discards all metrics.
+     */
+    public static final ImportMetrics NONE = new ImportMetrics() {
+
+        @Override
+        public void recordRow(String providerName) {
+        }
+
+        @Override
+        public void recordPhase(String providerName, Phase phase, long nanos) {
+        }
+
+        @Override
+        public void recordLookup(String lookupName, long nanos, boolean cacheHit) {
+        }
+
+        @Override
+        public void recordFlush(int size, long nanos) {
+        }
+
+        @Override
+        public void recordQuery(String queryName, boolean cached) {
+        }
+
+        @Override
+        public void recordDuplicate(String providerName) {
+        }
+    };
+
+    /**
+     * The phases in which the time of an entry is spent.
+     */
+    public static enum Phase {
+
+        /**
+         * Reading and parsing the entry from the dataprovider.
+         */
+        PARSE,
+        /**
+         * Populating the object with the values of the entry, including the
+         * lookups.
+         */
+        POPULATE,
+        /**
+         * Saving the object in the datastorage.
+         */
+        PERSIST
+    }
+
+    /**
+     * Is invoked for every entry of the dataprovider which was processed.
+     *
+     * @param providerName The simple class name of the dataprovider.
+     */
+    public void recordRow(String providerName);
+
+    /**
+     * Is invoked for every entry and phase with the time that was spent.
+     *
+     * @param providerName The simple class name of the dataprovider.
+     * @param phase The phase.
+     * @param nanos The time in nanoseconds.
+     */
+    public void recordPhase(String providerName, Phase phase, long nanos);
+
+    /**
+     * Is invoked for every resolution of a lookup.
+     *
+     * @param lookupName The name of the lookup, made of the class and the fields.
+     * @param nanos The time in nanoseconds.
+     * @param cacheHit True if the object was found in the lookup cache.
+     */
+    public void recordLookup(String lookupName, long nanos, boolean cacheHit);
+
+    /**
+     * Is invoked by datastorages for every flush.
+     *
+     * @param size The number of objects which were saved since the last flush.
+     * @param nanos The time in nanoseconds.
+     */
+    public void recordFlush(int size, long nanos);
+
+    /**
+     * Is invoked by datastorages for every query they execute.
+     *
+     * @param queryName The name of the query, usually the queried class.
+     * @param cached True if a compiled query was reused.
+     */
+    public void recordQuery(String queryName, boolean cached);
+
+    /**
+     * Is invoked for every entry which has the natural key of an entry that
+     * was imported before.
+     *
+     * @param providerName The simple class name of the dataprovider.
+     */
+    public void recordDuplicate(String providerName);
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the metrics in memory. This class is thread safe.
+ *
+ * @author Christian Beikov
+ */
+public class InMemoryImportMetrics implements ImportMetrics {
+
+    private final ConcurrentMap<String, ProviderMetrics> providers = new ConcurrentHashMap<String, ProviderMetrics>();
+    private final ConcurrentMap<String, LookupMetrics> lookups = new ConcurrentHashMap<String, LookupMetrics>();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedObjects = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong cachedQueries = new AtomicLong();
+
+    @Override
+    public void recordRow(String providerName) {
+        getProviderMetrics(providerName).recordRow();
+    }
+
+    @Override
+    public void recordDuplicate(String providerName) {
+        getProviderMetrics(providerName).duplicates.incrementAndGet();
+    }
+
+    @Override
+    public void recordPhase(String providerName, Phase phase, long nanos) {
+        getProviderMetrics(providerName).phaseNanos[phase.ordinal()].addAndGet(nanos);
+    }
+
+    @Override
+    public void recordLookup(String lookupName, long nanos, boolean cacheHit) {
+        LookupMetrics metrics = lookups.get(lookupName);
+
+        if (metrics == null) {
+            metrics = new LookupMetrics();
+            LookupMetrics existing = lookups.putIfAbsent(lookupName, metrics);
+
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+
+        metrics.count.incrementAndGet();
+        metrics.nanos.addAndGet(nanos);
+
+        if (cacheHit) {
+            metrics.hits.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void recordFlush(int size, long nanos) {
+        flushCount.incrementAndGet();
+        flushedObjects.addAndGet(size);
+        flushNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public void recordQuery(String queryName, boolean cached) {
+        queryCount.incrementAndGet();
+
+        if (cached) {
+            cachedQueries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the metrics of the dataproviders by their simple class names.
+     */
+    public Map<String, ProviderMetrics> getProviderMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<String, ProviderMetrics>(providers));
+    }
+
+    /**
+     * Returns the metrics of the lookups by their names.
+     */
+    public Map<String, LookupMetrics> getLookupMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<String, LookupMetrics>(lookups));
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedObjects() {
+        return flushedObjects.get();
+    }
+
+    public long getFlushNanos() {
+        return flushNanos.get();
+    }
+
+    /**
+     * Returns the average number of objects per flush.
+     */
+    public double getAverageFlushSize() {
+        long count = flushCount.get();
+        return count == 0 ? 0 : (double) flushedObjects.get() / count;
+    }
+
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * Returns the ratio of the queries which reused a compiled query.
+     */
+    public double getQueryCacheHitRate() {
+        long count = queryCount.get();
+        return count == 0 ? 0 : (double) cachedQueries.get() / count;
+    }
+
+    public void clear() {
+        providers.clear();
+        lookups.clear();
+        flushCount.set(0);
+        flushedObjects.set(0);
+        flushNanos.set(0);
+        queryCount.set(0);
+        cachedQueries.set(0);
+    }
+
+    private ProviderMetrics getProviderMetrics(String providerName) {
+        ProviderMetrics metrics = providers.get(providerName);
+
+        if (metrics == null) {
+            metrics = new ProviderMetrics();
+            ProviderMetrics existing = providers.putIfAbsent(providerName, metrics);
+
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Import metrics\n");
+
+        for (Map.Entry<String, ProviderMetrics> entry : getProviderMetrics().entrySet()) {
+            sb.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, LookupMetrics> entry : getLookupMetrics().entrySet()) {
+            sb.append("  Lookup ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+
+        sb.append("  Queries: ").append(getQueryCount()).append(", cached=").append(Math.round(getQueryCacheHitRate() * 100)).append("%\n");
+        sb.append("  Flushes: ").append(getFlushCount()).append(", objects=").append(getFlushedObjects()).append(", time=").append(getFlushNanos() / 1000000).append("ms");
+        return sb.toString();
+    }
+
+    /**
+     * The metrics of a dataprovider.
+     */
+    public static class ProviderMetrics {
+
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong duplicates = new AtomicLong();
+        private final AtomicLong[] phaseNanos = new AtomicLong[Phase.values().length];
+        private volatile long firstRowMillis;
+        private volatile long lastRowMillis;
+
+        ProviderMetrics() {
+            for (int i = 0; i < phaseNanos.length; i++) {
+                phaseNanos[i] = new AtomicLong();
+            }
+        }
+
+        void recordRow() {
+            long now = System.currentTimeMillis();
+
+            if (rows.getAndIncrement() == 0) {
+                firstRowMillis = now;
+            }
+
+            lastRowMillis = now;
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        /**
+         * Returns the number of entries with a duplicate natural key.
+         */
+        public long getDuplicates() {
+            return duplicates.get();
+        }
+
+        /**
+         * Returns the time in nanoseconds which was spent in the given phase.
+         */
+        public long getPhaseNanos(Phase phase) {
+            return phaseNanos[phase.ordinal()].get();
+        }
+
+        /**
+         * Returns the number of rows per second between the first and the
+         * last row.
+         */
+        public double getRowsPerSecond() {
+            long millis = lastRowMillis - firstRowMillis;
+            return millis <= 0 ? rows.get() : rows.get() * 1000.0 / millis;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("rows=").append(getRows()).append(", rows/s=").append((long) getRowsPerSecond());
+
+            if (getDuplicates() > 0) {
+                sb.append(", duplicates=").append(getDuplicates());
+            }
+
+            for (Phase phase : Phase.values()) {
+                sb.append(", ").append(phase.name().toLowerCase()).append('=').append(getPhaseNanos(phase) / 1000000).append("ms");
+            }
+
+            return sb.toString();
+        }
+    }
+
+    /**
+     * The metrics of a lookup.
+     */
+    public static class LookupMetrics {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getCacheHits() {
+            return hits.get();
+        }
+
+        public double getHitRate() {
+            long c = count.get();
+            return c == 0 ? 0 : (double) hits.get() / c;
+        }
+
+        /**
+         * Returns the average time of a lookup in nanoseconds.
+         */
+        public double getAverageNanos() {
+            long c = count.get();
+            return c == 0 ? 0 : (double) nanos.get() / c;
+        }
+
+        public long getNanos() {
+            return nanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + ", hitRate=" + Math.round(getHitRate() * 100) + "%, avg=" + Math.round(getAverageNanos() / 1000) + "us";
+        }
+    }
+}
@@ -4,14 +4,15 @@
 package com.blazebit.data.importer.provider;
 
 import com.blazebit.data.importer.DataProvider;
+import com.blazebit.data.importer.SeekableDataProvider;
 import com.csvreader.CsvReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -22,16 +23,20 @@ import java.util.logging.Logger;
  * The csv files must be valid. No trailing slash or so.
  * Standard text qualifier is a <code>"</code> but this can be changed to <code>'</code>
  * by qutoting the headers too.
+ * Seeking skips the records before the position without parsing them, seeking
+ * backwards reopens the file.
  * @author Christian Beikov
  */
-public class CsvDataProvider implements DataProvider {
+public class CsvDataProvider implements SeekableDataProvider, Closeable {
 
     private static final Logger log = Logger.getLogger(CsvDataProvider.class.getName());
     private static final char SEPARATOR = ';';
     private CsvReader reader;
     private File file;
+    private char separator;
     private String[] headers;
     private String simpleClassName;
+    private long position;
 
     public CsvDataProvider(String fileName) throws FileNotFoundException, IOException {
         this(fileName, SEPARATOR);
@@ -47,15 +52,21 @@ public class CsvDataProvider implements DataProvider {
 
     public CsvDataProvider(File file, char separator) throws FileNotFoundException, IOException {
         this.file = file;
+        this.separator = separator;
+        this.simpleClassName = this.file.getName().split("\\.")[0];
+        open();
+    }
+
+    private void open() throws FileNotFoundException, IOException {
         Charset charSet = Charset.forName("UTF-8");
        
         FileInputStream fl = new FileInputStream(file);
         this.reader = new CsvReader(fl, separator,charSet);
+        this.position = 0;
         
         this.reader.setTextQualifier('\'');
         this.reader.setEscapeMode(CsvReader.ESCAPE_MODE_BACKSLASH);
         this.reader.readHeaders();
-        this.simpleClassName = this.file.getName().split("\\.")[0];
         this.headers = this.reader.getHeaders();
         
         if(this.reader.getRawRecord().charAt(0) == '\'')
@@ -78,11 +89,8 @@ public class CsvDataProvider implements DataProvider {
     public DataProvider.Entry next() {
         try {
             if (this.reader.readRecord()) {
-              
-                    if(0<=Arrays.binarySearch(this.reader.getValues(), "Teststraße")){
-                        System.out.println("Found");
-            }
-                return parseRecord(this.reader.getValues());
+                position++;
+                return parseRecord(this.reader.getValues(), this.reader.getRawRecord());
             }
         } catch (IOException ex) {
             log.log(Level.SEVERE, ex.getMessage(), ex);
@@ -91,24 +99,58 @@ public class CsvDataProvider implements DataProvider {
         return null;
     }
     
-    private DataProvider.Entry parseRecord(String[] data){
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Invalid position: " + position);
+        }
+
+        try {
+            if (position < this.position) {
+                reader.close();
+                open();
+            }
+
+            while (this.position < position && reader.skipRecord()) {
+                this.position++;
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not seek to record " + position + " of " + file, ex);
+        }
+    }
+
+    /**
+     * Closes the underlying file.
+     */
+    @Override
+    public void close() {
+        reader.close();
+    }
+    
+    private DataProvider.Entry parseRecord(String[] data, String rawRecord){
         Map<String, String> simpleFields = new HashMap<String, String>();
         Map<String, Collection<DataProvider.Entry>> complexFields = new HashMap<String, Collection<DataProvider.Entry>>();
 
+        if(headers.length != data.length){
+            log.log(Level.WARNING, "Record " + position + " has " + data.length + " values but there are " + headers.length + " headers");
+        }
+
         for(int i = 0; i < data.length; i++){
             if ('{' == data[i].charAt(0)) {
                 Collection<DataProvider.Entry> subEntries = new ArrayList<DataProvider.Entry>();
                 subEntries.add(parseComplex(data[i].toCharArray(), 0, data[i].length() - 1));
                 complexFields.put(headers[i], subEntries);
             }else{
-                if(headers.length!=data.length){
-                    System.out.println("fehler");
-                }
                 simpleFields.put(headers[i], data[i]);
             }
         }
         
-        return new CsvDataProviderEntry(simpleFields, complexFields);
+        return new CsvDataProviderEntry(simpleFields, complexFields, rawRecord);
     }
     
     private DataProvider.Entry parseComplex(char[] part, int start, int end){
@@ -178,7 +220,7 @@ public class CsvDataProvider implements DataProvider {
             }
         }
         
-        return new CsvDataProviderEntry(simpleFields, complexFields);
+        return new CsvDataProviderEntry(simpleFields, complexFields, null);
     }
     
     private static boolean equalsNextAlphaChar(char needle, char[] haystack, int startIndex){
@@ -203,14 +245,16 @@ public class CsvDataProvider implements DataProvider {
         return text.length() > 2 ? text.substring(start, end) : text;
     }
     
-    private static class CsvDataProviderEntry implements DataProvider.Entry{
+    private static class CsvDataProviderEntry implements DataProvider.RawEntry{
 
         private Map<String, String> simpleFields;
         private Map<String, Collection<DataProvider.Entry>> complexFields;
+        private String rawRecord;
 
-        public CsvDataProviderEntry(Map<String, String> simpleFields, Map<String, Collection<DataProvider.Entry>> complexFields) {
+        public CsvDataProviderEntry(Map<String, String> simpleFields, Map<String, Collection<DataProvider.Entry>> complexFields, String rawRecord) {
             this.simpleFields = simpleFields;
             this.complexFields = complexFields;
+            this.rawRecord = rawRecord;
         }
         
         @Override
@@ -223,6 +267,11 @@ public class CsvDataProvider implements DataProvider {
             return complexFields;
         }
 
+        @Override
+        public String getRawRecord() {
+            return rawRecord;
+        }
+
         @Override
         public String toString() {
             return getString(0);
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.reject;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes the rejected rows to a file. Every row is written as one line with
+ * the tab separated columns provider, row, cause and record. Tabs, line breaks
+ * and backslashes within the columns are escaped with a backslash.
+ *
+ * @author Christian Beikov
+ */
+public class FileRejectSink implements RejectSink, Closeable {
+
+    private final File file;
+    private final Writer writer;
+    private long count;
+
+    public FileRejectSink(String fileName) throws IOException {
+        this(new File(fileName));
+    }
+
+    public FileRejectSink(File file) throws IOException {
+        this.file = file;
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        this.writer.write("provider\trow\tcause\trecord\n");
+        this.writer.flush();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of rows which were written.
+     * 
+     * @return The number of rejected rows
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized void reject(RejectedRow row) throws IOException {
+        writer.write(escape(row.getSimpleClassName()));
+        writer.write('\t');
+        writer.write(Long.toString(row.getRowNumber()));
+        writer.write('\t');
+        writer.write(escape(row.getCauseMessage()));
+        writer.write('\t');
+        writer.write(escape(row.getRecord()));
+        writer.write('\n');
+        // Rejects are rare, so they are written immediately to survive a crash
+        writer.flush();
+        count++;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+}
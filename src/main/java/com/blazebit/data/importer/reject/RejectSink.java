@@ -0,0 +1,23 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.reject;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows which were rejected during an import, so they can be
+ * corrected and reprocessed. Implementations must be thread safe.
+ *
+ * @author Christian Beikov
+ */
+public interface RejectSink {
+
+    /**
+     * Records the rejected row.
+     * 
+     * @param row The rejected row.
+     * @throws IOException 
+     */
+    public void reject(RejectedRow row) throws IOException;
+}
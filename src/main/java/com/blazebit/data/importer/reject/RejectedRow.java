@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.reject;
+
+import java.io.Serializable;
+
+/**
+ * A row of a dataprovider which was rejected because it could not be
+ * imported.
+ *
+ * @author Christian Beikov
+ */
+public class RejectedRow implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final String simpleClassName;
+    private final long rowNumber;
+    private final String record;
+    private final Throwable cause;
+
+    public RejectedRow(String simpleClassName, long rowNumber, String record, Throwable cause) {
+        this.simpleClassName = simpleClassName;
+        this.rowNumber = rowNumber;
+        this.record = record;
+        this.cause = cause;
+    }
+
+    /**
+     * Returns the simple class name of the dataprovider.
+     * 
+     * @return The simple class name
+     */
+    public String getSimpleClassName() {
+        return simpleClassName;
+    }
+
+    /**
+     * Returns the one based number of the entry within the dataprovider.
+     * 
+     * @return The row number
+     */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Returns the raw record if the dataprovider supplies it, otherwise a
+     * textual representation of the entry.
+     * 
+     * @return The record
+     */
+    public String getRecord() {
+        return record;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * Returns the message of the innermost cause, which is the most specific
+     * one since the importer wraps errors.
+     * 
+     * @return The message of the cause
+     */
+    public String getCauseMessage() {
+        Throwable t = cause;
+
+        while (t.getCause() != null && t.getCause() != t) {
+            t = t.getCause();
+        }
+
+        return t.getMessage() == null ? t.getClass().getName() : t.getClass().getName() + ": " + t.getMessage();
+    }
+
+    @Override
+    public String toString() {
+        return "RejectedRow[" + simpleClassName + " #" + rowNumber + ": " + getCauseMessage() + "]";
+    }
+}
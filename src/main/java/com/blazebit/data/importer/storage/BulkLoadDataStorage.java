@@ -0,0 +1,409 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.metrics.ImportMetrics;
+import com.blazebit.data.importer.storage.EntityMapping.ColumnMapping;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.metamodel.Metamodel;
+
+/**
+ * A datastorage which writes objects into a staging file per table and
+ * loads the files with the bulk load path of the database, see
+ * {@link BulkLoadDialect}. It is intended for initial loads into empty
+ * tables. Queries are executed like in {@link JDBCBatchDataStorage}, all
+ * staged files are loaded before every query.
+ *
+ * Generated identifiers which are not set are assigned by this datastorage,
+ * counting up from the highest identifier of the table when the first
+ * object of the class is saved, objects whose identifier is set are staged
+ * with it. Other writers must not insert into the tables during the load
+ * and the sequences or identity columns have to be reset afterwards. An
+ * object is written to the staging file when the batch size is reached or
+ * when objects of another class are saved. Objects which are saved again
+ * afterwards are updated after the next load. The staged objects are
+ * forgotten when they are loaded, saving them again after that stages them
+ * again, which fails the next load with a duplicate key. The staging files are loaded
+ * when the load size is reached and on {@link #flush()}, the changes are not
+ * committed.
+ *
+ * @author Christian Beikov
+ */
+public class BulkLoadDataStorage extends JDBCBatchDataStorage {
+
+    private static final Logger log = Logger.getLogger(BulkLoadDataStorage.class.getName());
+    public static final int DEFAULT_LOAD_SIZE = 100000;
+    private final Connection connection;
+    private final BulkLoadDialect dialect;
+    private final Map<EntityMapping, StagingFile> stagingFiles = new LinkedHashMap<EntityMapping, StagingFile>();
+    private final Map<EntityMapping, Long> nextIds = new HashMap<EntityMapping, Long>();
+    private final List<Serializable> pendingObjects = new ArrayList<Serializable>();
+    private final Map<Serializable, Boolean> pending = new IdentityHashMap<Serializable, Boolean>();
+    // The objects in the staging files, until they are loaded
+    private final Map<Serializable, Boolean> staged = new IdentityHashMap<Serializable, Boolean>();
+    private EntityMapping pendingMapping;
+    private File stagingDirectory;
+    private int loadSize = DEFAULT_LOAD_SIZE;
+    private int stagedRows;
+    private ImportMetrics metrics = ImportMetrics.NONE;
+
+    /**
+     * Creates a datastorage with the dialect of the database of the
+     * connection.
+     */
+    public BulkLoadDataStorage(Connection connection, Metamodel metamodel) {
+        this(connection, metamodel, getDialect(connection));
+    }
+
+    public BulkLoadDataStorage(Connection connection, Metamodel metamodel, BulkLoadDialect dialect) {
+        super(connection, metamodel);
+
+        if (dialect == null) {
+            throw new NullPointerException();
+        }
+
+        this.connection = connection;
+        this.dialect = dialect;
+    }
+
+    private static BulkLoadDialect getDialect(Connection connection) {
+        try {
+            return BulkLoadDialect.forConnection(connection);
+        } catch (SQLException ex) {
+            throw new DataStorageException("Could not determine the database", ex);
+        }
+    }
+
+    public BulkLoadDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Sets the directory in which the staging files are created, the
+     * default is the temporary directory.
+     *
+     * @param stagingDirectory The directory or null for the default.
+     */
+    public void setStagingDirectory(File stagingDirectory) {
+        this.stagingDirectory = stagingDirectory;
+    }
+
+    public File getStagingDirectory() {
+        return stagingDirectory;
+    }
+
+    /**
+     * Sets the number of staged rows after which the staging files are
+     * loaded.
+     *
+     * @param loadSize The number of rows.
+     */
+    public void setLoadSize(int loadSize) {
+        if (loadSize < 1) {
+            throw new IllegalArgumentException("Invalid load size: " + loadSize);
+        }
+        this.loadSize = loadSize;
+    }
+
+    public int getLoadSize() {
+        return loadSize;
+    }
+
+    @Override
+    public Serializable saveObject(Serializable object) {
+        checkConnected();
+        EntityMapping mapping = getMapping(object.getClass());
+
+        if (pending.containsKey(object)) {
+            return object;
+        }
+
+        if (staged.containsKey(object)) {
+            // The row is updated after the staging files were loaded
+            setWritten(object);
+            return super.saveObject(object);
+        }
+
+        if (pendingMapping != mapping || pendingObjects.size() >= getBatchSize()) {
+            stage();
+            pendingMapping = mapping;
+        }
+
+        if (mapping.isGeneratedId()) {
+            ColumnMapping id = mapping.getId();
+            Object value = id.getAccessor().get(object);
+
+            if (isUnset(value)) {
+                id.getAccessor().set(object, toJava(id.getType(), nextId(mapping)));
+            } else {
+                reserveId(mapping, ((Number) value).longValue());
+            }
+        }
+
+        pending.put(object, Boolean.TRUE);
+        pendingObjects.add(object);
+        return object;
+    }
+
+    private Long nextId(EntityMapping mapping) {
+        Long id = lastId(mapping) + 1;
+        nextIds.put(mapping, id);
+        return id;
+    }
+
+    /**
+     * Makes sure that identifiers which are assigned later are higher than
+     * the given identifier.
+     */
+    private void reserveId(EntityMapping mapping, long id) {
+        if (id > lastId(mapping)) {
+            nextIds.put(mapping, id);
+        }
+    }
+
+    private Long lastId(EntityMapping mapping) {
+        Long id = nextIds.get(mapping);
+
+        if (id == null) {
+            String sql = "SELECT MAX(" + mapping.getId().getName() + ") FROM " + mapping.getTableName();
+
+            try {
+                Statement statement = connection.createStatement();
+
+                try {
+                    ResultSet rs = statement.executeQuery(sql);
+
+                    try {
+                        id = rs.next() ? rs.getLong(1) : 0L;
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    statement.close();
+                }
+            } catch (SQLException ex) {
+                throw new DataStorageException("Could not execute " + sql, ex);
+            }
+
+            nextIds.put(mapping, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Writes the pending objects to the staging file of their table.
+     */
+    private void stage() {
+        if (pendingObjects.isEmpty()) {
+            return;
+        }
+
+        StagingFile stagingFile = stagingFiles.get(pendingMapping);
+
+        try {
+            if (stagingFile == null) {
+                stagingFile = new StagingFile(pendingMapping, File.createTempFile(pendingMapping.getTableName(), ".csv", stagingDirectory));
+                stagingFiles.put(pendingMapping, stagingFile);
+            }
+
+            for (Serializable object : pendingObjects) {
+                stagingFile.write(object);
+                staged.put(object, Boolean.TRUE);
+            }
+        } catch (IOException ex) {
+            throw new DataStorageException("Could not stage the objects of " + pendingMapping.getEntityClass().getName(), ex);
+        } finally {
+            stagedRows += pendingObjects.size();
+            pendingObjects.clear();
+            pending.clear();
+        }
+
+        if (stagedRows >= loadSize) {
+            load();
+        }
+    }
+
+    /**
+     * Loads the staging files in the order in which they were created, so
+     * referenced rows are loaded before the rows which refer to them.
+     */
+    private void load() {
+        if (stagingFiles.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int size = stagedRows;
+
+        try {
+            for (StagingFile stagingFile : stagingFiles.values()) {
+                EntityMapping mapping = stagingFile.getMapping();
+
+                try {
+                    stagingFile.close();
+                    dialect.load(connection, mapping.getTableName(), stagingFile.getColumnList(), stagingFile.getFile());
+                } catch (SQLException ex) {
+                    throw new DataStorageException("Could not load the objects of " + mapping.getEntityClass().getName(), ex);
+                } catch (IOException ex) {
+                    throw new DataStorageException("Could not load the objects of " + mapping.getEntityClass().getName(), ex);
+                }
+            }
+        } finally {
+            deleteStagingFiles();
+            staged.clear();
+            stagedRows = 0;
+        }
+
+        metrics.recordFlush(size, System.nanoTime() - start);
+    }
+
+    private void deleteStagingFiles() {
+        for (StagingFile stagingFile : stagingFiles.values()) {
+            try {
+                stagingFile.close();
+            } catch (IOException ex) {
+                log.log(Level.WARNING, ex.getMessage(), ex);
+            }
+
+            if (!stagingFile.getFile().delete()) {
+                log.log(Level.WARNING, "Could not delete the staging file " + stagingFile.getFile());
+            }
+        }
+
+        stagingFiles.clear();
+    }
+
+    /**
+     * Loads the staged objects and writes the pending updates.
+     */
+    @Override
+    public void flush() {
+        checkConnected();
+        stage();
+        load();
+        super.flush();
+    }
+
+    /**
+     * Loads the staged objects and closes the connection. The staging files
+     * are deleted even if the load fails.
+     */
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } finally {
+            deleteStagingFiles();
+        }
+    }
+
+    @Override
+    public void setMetrics(ImportMetrics metrics) {
+        super.setMetrics(metrics);
+        this.metrics = metrics;
+    }
+
+    /**
+     * A staging file which contains the rows of one table.
+     */
+    private static class StagingFile {
+
+        private final EntityMapping mapping;
+        private final List<ColumnMapping> columns;
+        private final String columnList;
+        private final File file;
+        private Writer writer;
+
+        public StagingFile(EntityMapping mapping, File file) throws IOException {
+            this.mapping = mapping;
+            // Generated identifiers are assigned, so they are part of the rows
+            this.columns = mapping.getSelectColumns();
+            this.file = file;
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+            StringBuilder sb = new StringBuilder();
+
+            for (ColumnMapping column : columns) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(column.getName());
+            }
+
+            this.columnList = sb.toString();
+        }
+
+        public EntityMapping getMapping() {
+            return mapping;
+        }
+
+        public String getColumnList() {
+            return columnList;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public void write(Serializable object) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnMapping column = columns.get(i);
+
+                if (i > 0) {
+                    writer.write(',');
+                }
+
+                writeValue(toJdbc(column, column.getAccessor().get(object)));
+            }
+
+            writer.write('\n');
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof byte[]) {
+                throw new DataStorageException("Binary values are not supported by the bulk load");
+            }
+
+            String s = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+
+            if (s.length() == 0 || s.indexOf(',') > -1 || s.indexOf('"') > -1 || s.indexOf('\n') > -1 || s.indexOf('\r') > -1 || s.indexOf('\\') > -1) {
+                writer.write('"');
+                writer.write(s.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(s);
+            }
+        }
+
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The bulk load paths of the supported databases. A staging file contains
+ * one row per line in CSV format without a header, fields are separated by
+ * commas and quoted with double quotes. An unquoted empty field is null, an
+ * empty string is written as two double quotes.
+ *
+ * @author Christian Beikov
+ */
+public enum BulkLoadDialect {
+
+    /**
+     * Loads the file with COPY FROM STDIN through the CopyManager of the
+     * PostgreSQL driver. The driver is accessed reflectively, so it is only
+     * needed at runtime.
+     */
+    POSTGRESQL {
+
+        @Override
+        void load(Connection connection, String tableName, String columnList, File file) throws SQLException, IOException {
+            String sql = "COPY " + tableName + " (" + columnList + ") FROM STDIN WITH CSV";
+            Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+            try {
+                Class baseConnectionClass = Class.forName("org.postgresql.core.BaseConnection", true, connection.getClass().getClassLoader());
+                Class copyManagerClass = Class.forName("org.postgresql.copy.CopyManager", true, baseConnectionClass.getClassLoader());
+                Object copyManager = copyManagerClass.getConstructor(baseConnectionClass).newInstance(connection.unwrap(baseConnectionClass));
+                copyManagerClass.getMethod("copyIn", String.class, Reader.class).invoke(copyManager, sql, reader);
+            } catch (InvocationTargetException ex) {
+                if (ex.getCause() instanceof SQLException) {
+                    throw (SQLException) ex.getCause();
+                }
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+
+                throw new DataStorageException("Could not execute " + sql, ex.getCause());
+            } catch (Exception ex) {
+                throw new DataStorageException("The PostgreSQL driver does not support COPY", ex);
+            } finally {
+                reader.close();
+            }
+        }
+    },
+    /**
+     * Loads the file with an INSERT from CSVREAD. The file has to be
+     * accessible by the database, so this only works for embedded databases
+     * or servers on the same machine.
+     */
+    H2 {
+
+        @Override
+        void load(Connection connection, String tableName, String columnList, File file) throws SQLException, IOException {
+            PreparedStatement ps = connection.prepareStatement("INSERT INTO " + tableName + " (" + columnList + ") SELECT * FROM CSVREAD(?, ?, 'charset=UTF-8')");
+
+            try {
+                ps.setString(1, file.getAbsolutePath());
+                ps.setString(2, columnList.replace(" ", ""));
+                ps.executeUpdate();
+            } finally {
+                ps.close();
+            }
+        }
+    };
+
+    /**
+     * Loads the rows of the staging file into the given columns of the table.
+     */
+    abstract void load(Connection connection, String tableName, String columnList, File file) throws SQLException, IOException;
+
+    /**
+     * Returns the dialect for the database of the connection.
+     *
+     * @throws IllegalArgumentException if the database is not supported
+     */
+    public static BulkLoadDialect forConnection(Connection connection) throws SQLException {
+        String productName = connection.getMetaData().getDatabaseProductName();
+
+        if ("PostgreSQL".equalsIgnoreCase(productName)) {
+            return POSTGRESQL;
+        } else if ("H2".equalsIgnoreCase(productName)) {
+            return H2;
+        }
+
+        throw new IllegalArgumentException("Bulk loading is not supported for " + productName);
+    }
+}
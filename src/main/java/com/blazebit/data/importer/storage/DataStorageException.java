@@ -0,0 +1,24 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+/**
+ * Is thrown when a datastorage can't access the underlying store.
+ *
+ * @author Christian Beikov
+ */
+public class DataStorageException extends RuntimeException {
+
+    public DataStorageException(Throwable cause) {
+        super(cause);
+    }
+
+    public DataStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public DataStorageException(String message) {
+        super(message);
+    }
+}
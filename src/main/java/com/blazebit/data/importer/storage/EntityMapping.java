@@ -0,0 +1,330 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.accessor.PropertyAccessor;
+import com.blazebit.data.importer.accessor.PropertyAccessorFactory;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+
+/**
+ * The mapping of an entity class to its table, derived from the JPA metamodel
+ * and the mapping annotations. Only single table entities with basic and to
+ * one attributes are supported, collections and embedded attributes are not
+ * mapped.
+ *
+ * @author Christian Beikov
+ */
+class EntityMapping {
+
+    private static final Logger log = Logger.getLogger(EntityMapping.class.getName());
+    private final Class entityClass;
+    private final String tableName;
+    private final ColumnMapping id;
+    private final boolean generatedId;
+    private final List<ColumnMapping> columns;
+    private final Map<String, ColumnMapping> columnsByAttribute;
+    private final String columnList;
+
+    EntityMapping(Class entityClass, Metamodel metamodel, PropertyAccessorFactory accessorFactory) {
+        EntityType entityType = metamodel.entity(entityClass);
+        Class superclass = entityClass.getSuperclass();
+
+        if (superclass != null && isEntity(metamodel, superclass)) {
+            throw new IllegalArgumentException("The entity " + entityClass.getName() + " is part of an inheritance hierarchy which is not supported");
+        }
+        if (!entityType.hasSingleIdAttribute()) {
+            throw new IllegalArgumentException("The entity " + entityClass.getName() + " has a composite id which is not supported");
+        }
+
+        this.entityClass = entityClass;
+        this.tableName = getTableName(entityClass);
+
+        ColumnMapping idColumn = null;
+        boolean generated = false;
+        List<ColumnMapping> columnList = new ArrayList<ColumnMapping>();
+        Map<String, ColumnMapping> byAttribute = new HashMap<String, ColumnMapping>();
+
+        for (Object o : entityType.getSingularAttributes()) {
+            SingularAttribute attribute = (SingularAttribute) o;
+            AnnotatedElement member = (AnnotatedElement) attribute.getJavaMember();
+            PropertyAccessor accessor = accessorFactory.getAccessor(entityClass, attribute.getName());
+            ColumnMapping column;
+
+            switch (attribute.getPersistentAttributeType()) {
+                case BASIC:
+                    Column c = member.getAnnotation(Column.class);
+                    Enumerated e = member.getAnnotation(Enumerated.class);
+                    column = new ColumnMapping(c == null || c.name().length() == 0 ? attribute.getName() : c.name(), accessor, attribute.getJavaType(), null, e != null && e.value() == EnumType.STRING);
+
+                    if (c != null && !c.insertable()) {
+                        column = null;
+                    }
+                    break;
+                case MANY_TO_ONE:
+                case ONE_TO_ONE:
+                    OneToOne oneToOne = member.getAnnotation(OneToOne.class);
+
+                    if (oneToOne != null && oneToOne.mappedBy().length() > 0) {
+                        // The inverse side has no column
+                        continue;
+                    }
+
+                    JoinColumn jc = member.getAnnotation(JoinColumn.class);
+                    Class targetClass = attribute.getJavaType();
+                    String name = jc == null || jc.name().length() == 0 ? attribute.getName() + "_" + getIdColumnName(metamodel, targetClass) : jc.name();
+                    column = new ColumnMapping(name, accessor, targetClass, accessorFactory.getAccessor(targetClass, getIdAttribute(metamodel, targetClass).getName()), false);
+
+                    if (jc != null && !jc.insertable()) {
+                        column = null;
+                    }
+                    break;
+                default:
+                    log.log(Level.WARNING, "The attribute " + attribute.getName() + " of " + entityClass.getName() + " is not supported and will not be written");
+                    continue;
+            }
+
+            if (column == null) {
+                continue;
+            }
+
+            byAttribute.put(attribute.getName(), column);
+
+            if (attribute.isId()) {
+                idColumn = column;
+                generated = member.getAnnotation(GeneratedValue.class) != null;
+
+                if (generated) {
+                    continue;
+                }
+            }
+
+            columnList.add(column);
+        }
+
+        for (Object o : entityType.getPluralAttributes()) {
+            log.log(Level.WARNING, "The collection " + ((PluralAttribute) o).getName() + " of " + entityClass.getName() + " is not supported and will not be written");
+        }
+
+        this.id = idColumn;
+        this.generatedId = generated;
+        this.columns = Collections.unmodifiableList(columnList);
+        this.columnsByAttribute = byAttribute;
+
+        StringBuilder sb = new StringBuilder();
+
+        for (ColumnMapping column : columns) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(column.getName());
+        }
+
+        this.columnList = sb.toString();
+    }
+
+    private static boolean isEntity(Metamodel metamodel, Class clazz) {
+        try {
+            return metamodel.entity(clazz) != null;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private static String getTableName(Class clazz) {
+        Table table = (Table) clazz.getAnnotation(Table.class);
+
+        if (table != null && table.name().length() > 0) {
+            return table.name();
+        }
+
+        Entity entity = (Entity) clazz.getAnnotation(Entity.class);
+        return entity != null && entity.name().length() > 0 ? entity.name() : clazz.getSimpleName();
+    }
+
+    private static SingularAttribute getIdAttribute(Metamodel metamodel, Class clazz) {
+        EntityType entityType = metamodel.entity(clazz);
+        return entityType.getId(entityType.getIdType().getJavaType());
+    }
+
+    private static String getIdColumnName(Metamodel metamodel, Class clazz) {
+        Member member = getIdAttribute(metamodel, clazz).getJavaMember();
+        Column c = ((AnnotatedElement) member).getAnnotation(Column.class);
+        return c == null || c.name().length() == 0 ? getIdAttribute(metamodel, clazz).getName() : c.name();
+    }
+
+    public Class getEntityClass() {
+        return entityClass;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public ColumnMapping getId() {
+        return id;
+    }
+
+    /**
+     * Returns whether the identifier is generated by the database, in which
+     * case it is not part of the insert columns.
+     */
+    public boolean isGeneratedId() {
+        return generatedId;
+    }
+
+    /**
+     * Returns the columns which are written by an insert.
+     */
+    public List<ColumnMapping> getColumns() {
+        return columns;
+    }
+
+    public ColumnMapping getColumn(String attributeName) {
+        ColumnMapping column = columnsByAttribute.get(attributeName);
+
+        if (column == null) {
+            throw new IllegalArgumentException("The attribute " + attributeName + " of " + entityClass.getName() + " is not mapped to a column");
+        }
+
+        return column;
+    }
+
+    /**
+     * Returns an insert statement for the given number of rows.
+     */
+    public String getInsertSql(int rows) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(tableName).append(" (").append(columnList).append(") VALUES ");
+
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append('(');
+
+            for (int j = 0; j < columns.size(); j++) {
+                sb.append(j == 0 ? "?" : ", ?");
+            }
+
+            sb.append(')');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns an update statement which sets all insert columns except the
+     * identifier by the identifier.
+     */
+    public String getUpdateSql() {
+        StringBuilder sb = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+        boolean first = true;
+
+        for (ColumnMapping column : columns) {
+            if (column != id) {
+                sb.append(first ? "" : ", ").append(column.getName()).append(" = ?");
+                first = false;
+            }
+        }
+
+        return sb.append(" WHERE ").append(id.getName()).append(" = ?").toString();
+    }
+
+    /**
+     * Returns a select statement for all columns, the where clause has to be
+     * appended.
+     */
+    public String getSelectSql() {
+        StringBuilder sb = new StringBuilder("SELECT ");
+
+        if (generatedId) {
+            sb.append(id.getName()).append(columns.isEmpty() ? "" : ", ");
+        }
+
+        return sb.append(columnList).append(" FROM ").append(tableName).toString();
+    }
+
+    /**
+     * Returns the columns in the order of {@link #getSelectSql()}.
+     */
+    public List<ColumnMapping> getSelectColumns() {
+        if (!generatedId) {
+            return columns;
+        }
+
+        List<ColumnMapping> selectColumns = new ArrayList<ColumnMapping>(columns.size() + 1);
+        selectColumns.add(id);
+        selectColumns.addAll(columns);
+        return selectColumns;
+    }
+
+    /**
+     * The mapping of an attribute to a column. Associations are mapped to the
+     * identifier of the associated object.
+     */
+    static class ColumnMapping {
+
+        private final String name;
+        private final PropertyAccessor accessor;
+        private final Class type;
+        private final PropertyAccessor targetId;
+        private final boolean enumString;
+
+        public ColumnMapping(String name, PropertyAccessor accessor, Class type, PropertyAccessor targetId, boolean enumString) {
+            this.name = name;
+            this.accessor = accessor;
+            this.type = type;
+            this.targetId = targetId;
+            this.enumString = enumString;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PropertyAccessor getAccessor() {
+            return accessor;
+        }
+
+        public Class getType() {
+            return type;
+        }
+
+        public boolean isAssociation() {
+            return targetId != null;
+        }
+
+        /**
+         * Returns the accessor for the identifier of the associated object.
+         */
+        public PropertyAccessor getTargetId() {
+            return targetId;
+        }
+
+        public boolean isEnumString() {
+            return enumString;
+        }
+    }
+}
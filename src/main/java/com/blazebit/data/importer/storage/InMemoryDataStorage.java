@@ -0,0 +1,373 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.DataStorage;
+import com.blazebit.data.importer.DataStorageFactory;
+import com.blazebit.data.importer.EntityMetadata;
+import com.blazebit.data.importer.accessor.PropertyAccessor;
+import com.blazebit.data.importer.accessor.PropertyAccessorFactory;
+import com.blazebit.data.importer.accessor.ReflectionPropertyAccessorFactory;
+import com.blazebit.data.importer.metrics.ImportMetrics;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import javax.persistence.metamodel.Metamodel;
+
+/**
+ * A datastorage which keeps the objects in memory, e.g. for dry runs of an
+ * import or to measure the importer without a database. Numeric identifiers
+ * which are not set are generated, other identifiers have to be assigned.
+ *
+ * The objects of a class are indexed by the values of the fields by which
+ * they are queried. An index is built on the first query for a set of fields
+ * and is maintained when objects are saved afterwards, so the lookups of an
+ * import only scan the objects once. Indexes can also be added in advance
+ * with {@link #addIndex(Class, String[])}.
+ *
+ * The datastorage is also a factory which returns itself, so workers of a
+ * parallel generation share the objects.
+ *
+ * @author Christian Beikov
+ */
+public class InMemoryDataStorage implements DataStorage, DataStorageFactory {
+
+    private final PropertyAccessorFactory accessorFactory = new ReflectionPropertyAccessorFactory();
+    private final Map<Class, ClassStore> stores = new HashMap<Class, ClassStore>();
+
+    public InMemoryDataStorage() {
+    }
+
+    /**
+     * Creates a datastorage which manages the entities of the metamodel.
+     */
+    public InMemoryDataStorage(Metamodel metamodel) {
+        for (EntityMetadata metadata : JPADataStorage.readMetadata(metamodel).values()) {
+            register(metadata);
+        }
+    }
+
+    /**
+     * Registers a class which has an identifier with the given name. The type
+     * of the identifier is the type of the property.
+     *
+     * @param clazz The class to manage.
+     * @param identifierName The name of the identifier or null if the objects have no identifier.
+     */
+    public synchronized void register(Class clazz, String identifierName) {
+        Class identifierType = identifierName == null ? null : accessorFactory.getAccessor(clazz, identifierName).getType();
+        register(new EntityMetadata(clazz, identifierType, identifierName, null, Collections.<String, Class>emptyMap()));
+    }
+
+    public synchronized void register(EntityMetadata metadata) {
+        stores.put(metadata.getEntityClass(), new ClassStore(metadata));
+    }
+
+    /**
+     * Adds an index on the given fields of a class.
+     *
+     * @param clazz The class of the objects.
+     * @param fieldNames The names of the fields.
+     */
+    public synchronized void addIndex(Class clazz, String... fieldNames) {
+        getStore(clazz).getIndex(new TreeSet<String>(Arrays.asList(fieldNames)));
+    }
+
+    /**
+     * Returns the number of stored objects of the class.
+     */
+    public synchronized int size(Class clazz) {
+        return getStore(clazz).objects.size();
+    }
+
+    @Override
+    public synchronized Serializable getById(Class clazz, Serializable id) {
+        return getStore(clazz).byId.get(id);
+    }
+
+    @Override
+    public Serializable getByField(Class clazz, String fieldName, Serializable fieldValue) {
+        return getByFields(clazz, Collections.singletonMap(fieldName, fieldValue));
+    }
+
+    @Override
+    public Serializable getByFields(Class clazz, Map<String, Serializable> valueMap) {
+        List<Serializable> result = getListByFields(clazz, valueMap);
+
+        if (result.size() > 1) {
+            throw new DataStorageException("Found " + result.size() + " objects of " + clazz.getName() + " where one was expected");
+        }
+
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    @Override
+    public List<Serializable> getListByField(Class clazz, String fieldName, Serializable fieldValue) {
+        return getListByFields(clazz, Collections.singletonMap(fieldName, fieldValue));
+    }
+
+    /**
+     * Returns the objects which have the given values. A collection as value
+     * matches every object which has one of the elements as value.
+     */
+    @Override
+    public synchronized List<Serializable> getListByFields(Class clazz, Map<String, Serializable> valueMap) {
+        ClassStore store = getStore(clazz);
+        Index index = store.getIndex(new TreeSet<String>(valueMap.keySet()));
+        List<Serializable> result = new ArrayList<Serializable>();
+        collect(index, valueMap, new ArrayList<Object>(index.fieldNames.size()), result);
+        return result;
+    }
+
+    /**
+     * Adds the objects of every combination of the values to the result.
+     */
+    private static void collect(Index index, Map<String, Serializable> valueMap, List<Object> key, List<Serializable> result) {
+        if (key.size() == index.fieldNames.size()) {
+            List<Serializable> objects = index.objects.get(key);
+
+            if (objects != null) {
+                result.addAll(objects);
+            }
+            return;
+        }
+
+        Object value = valueMap.get(index.fieldNames.get(key.size()));
+        Collection values = value instanceof Collection ? (Collection) value : Collections.singletonList(value);
+
+        for (Object element : values) {
+            key.add(element);
+            collect(index, valueMap, key, result);
+            key.remove(key.size() - 1);
+        }
+    }
+
+    @Override
+    public Class getIdentifierType(Class clazz) {
+        EntityMetadata metadata = getMetadata(clazz);
+        return metadata == null ? null : metadata.getIdentifierType();
+    }
+
+    @Override
+    public synchronized EntityMetadata getMetadata(Class clazz) {
+        ClassStore store = stores.get(clazz);
+        return store == null ? null : store.metadata;
+    }
+
+    @Override
+    public synchronized Serializable saveObject(Serializable object) {
+        ClassStore store = getStore(object.getClass());
+        PropertyAccessor id = store.id;
+
+        if (id != null) {
+            Object value = id.get(object);
+
+            if (value == null || (value instanceof Number && ((Number) value).longValue() == 0)) {
+                value = nextId(store);
+
+                if (value != null) {
+                    id.set(object, value);
+                }
+            } else if (value instanceof Number) {
+                // Generated identifiers continue after the assigned ones
+                store.lastId = Math.max(store.lastId, ((Number) value).longValue());
+            }
+            if (value != null) {
+                store.byId.put((Serializable) value, object);
+            }
+        }
+
+        if (store.objects.put(object, Boolean.TRUE) == null) {
+            for (Index index : store.indexes.values()) {
+                index.add(object);
+            }
+        } else {
+            // The values of the object may have changed since it was saved
+            for (Index index : store.indexes.values()) {
+                index.remove(object);
+                index.add(object);
+            }
+        }
+
+        return object;
+    }
+
+    private static Object nextId(ClassStore store) {
+        Class type = store.metadata.getIdentifierType();
+        long next = ++store.lastId;
+
+        if (Long.class.equals(type) || long.class.equals(type)) {
+            return next;
+        } else if (Integer.class.equals(type) || int.class.equals(type)) {
+            return (int) next;
+        } else if (Short.class.equals(type) || short.class.equals(type)) {
+            return (short) next;
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized Serializable getIdentifier(Serializable object) {
+        PropertyAccessor id = getStore(object.getClass()).id;
+        return id == null ? null : (Serializable) id.get(object);
+    }
+
+    /**
+     * Returns the stored object, since there is nothing to defer.
+     */
+    @Override
+    public Serializable getReference(Class clazz, Serializable id) {
+        return getById(clazz, id);
+    }
+
+    /**
+     * Removes all objects, the registered classes are kept.
+     */
+    @Override
+    public synchronized void close() {
+        for (Map.Entry<Class, ClassStore> entry : stores.entrySet()) {
+            entry.setValue(new ClassStore(entry.getValue().metadata));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public synchronized boolean isManaged(Class clazz) {
+        return stores.containsKey(clazz);
+    }
+
+    @Override
+    public void setMetrics(ImportMetrics metrics) {
+    }
+
+    @Override
+    public DataStorage createDataStorage() {
+        return this;
+    }
+
+    @Override
+    public void releaseDataStorage(DataStorage storage, boolean successful) {
+    }
+
+    private ClassStore getStore(Class clazz) {
+        ClassStore store = stores.get(clazz);
+
+        if (store == null) {
+            throw new IllegalArgumentException("The class " + clazz.getName() + " is not managed");
+        }
+
+        return store;
+    }
+
+    /**
+     * The objects of one class with their indexes.
+     */
+    private class ClassStore {
+
+        private final EntityMetadata metadata;
+        private final PropertyAccessor id;
+        private final Map<Serializable, Boolean> objects = new IdentityHashMap<Serializable, Boolean>();
+        private final Map<Serializable, Serializable> byId = new HashMap<Serializable, Serializable>();
+        private final Map<Collection<String>, Index> indexes = new HashMap<Collection<String>, Index>();
+        private long lastId;
+
+        public ClassStore(EntityMetadata metadata) {
+            this.metadata = metadata;
+            this.id = metadata.getIdentifierName() == null ? null : accessorFactory.getAccessor(metadata.getEntityClass(), metadata.getIdentifierName());
+        }
+
+        public Index getIndex(TreeSet<String> fieldNames) {
+            Index index = indexes.get(fieldNames);
+
+            if (index == null) {
+                List<PropertyAccessor> accessors = new ArrayList<PropertyAccessor>(fieldNames.size());
+
+                for (String fieldName : fieldNames) {
+                    accessors.add(accessorFactory.getAccessor(metadata.getEntityClass(), fieldName));
+                }
+
+                index = new Index(new ArrayList<String>(fieldNames), accessors);
+
+                for (Serializable object : objects.keySet()) {
+                    index.add(object);
+                }
+
+                indexes.put(fieldNames, index);
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * A hash index of the objects of a class by the values of some fields.
+     * The keys under which the objects were added are kept, so an object can
+     * be moved when its values change.
+     */
+    private static class Index {
+
+        private final List<String> fieldNames;
+        private final List<PropertyAccessor> accessors;
+        private final Map<List<Object>, List<Serializable>> objects = new HashMap<List<Object>, List<Serializable>>();
+        private final Map<Serializable, List<Object>> keys = new IdentityHashMap<Serializable, List<Object>>();
+
+        public Index(List<String> fieldNames, List<PropertyAccessor> accessors) {
+            this.fieldNames = fieldNames;
+            this.accessors = accessors;
+        }
+
+        public void add(Serializable object) {
+            List<Object> key = new ArrayList<Object>(accessors.size());
+
+            for (PropertyAccessor accessor : accessors) {
+                key.add(accessor.get(object));
+            }
+
+            List<Serializable> list = objects.get(key);
+
+            if (list == null) {
+                list = new ArrayList<Serializable>(1);
+                objects.put(key, list);
+            }
+
+            list.add(object);
+            keys.put(object, key);
+        }
+
+        public void remove(Serializable object) {
+            List<Object> key = keys.remove(object);
+            List<Serializable> list = key == null ? null : objects.get(key);
+
+            if (list == null) {
+                return;
+            }
+
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == object) {
+                    list.remove(i);
+                    break;
+                }
+            }
+
+            if (list.isEmpty()) {
+                objects.remove(key);
+            }
+        }
+    }
+}
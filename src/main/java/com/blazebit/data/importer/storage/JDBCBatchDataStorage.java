@@ -0,0 +1,626 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.DataStorage;
+import com.blazebit.data.importer.EntityMetadata;
+import com.blazebit.data.importer.accessor.PropertyAccessorFactory;
+import com.blazebit.data.importer.accessor.ReflectionPropertyAccessorFactory;
+import com.blazebit.data.importer.metrics.ImportMetrics;
+import com.blazebit.data.importer.storage.EntityMapping.ColumnMapping;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.metamodel.Metamodel;
+
+/**
+ * A datastorage which writes objects with JDBC batches instead of merging
+ * them into a persistence context. The insert statements are derived from
+ * the JPA metamodel and the mapping annotations, see {@link EntityMapping}
+ * for the supported mappings. It is intended for bulk loading into empty
+ * tables, objects are never compared with existing rows.
+ *
+ * Saved objects are written when the batch size is reached, when objects of
+ * another class are saved, before every query, before an object refers to a
+ * queued object with a generated identifier and when the identifier of such
+ * an object is requested. Identifiers generated by the database are assigned
+ * to the objects when they are written, an identifier which was set before
+ * is replaced. The datastorage remembers the objects it wrote or read until
+ * the next {@link #commit()}. Saving one of them again updates the row with
+ * the identifier of the object, every other object is inserted. Objects
+ * which are saved again after a commit are inserted again, so commit in
+ * chunks to bound the memory, but only after the objects of a chunk were
+ * saved for the last time. An update which matches no row fails. The changes
+ * are not committed, call {@link #flush()} before committing the connection.
+ *
+ * @author Christian Beikov
+ */
+public class JDBCBatchDataStorage implements DataStorage {
+
+    private static final Logger log = Logger.getLogger(JDBCBatchDataStorage.class.getName());
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    private Connection connection;
+    private final Metamodel metamodel;
+    private final PropertyAccessorFactory accessorFactory = new ReflectionPropertyAccessorFactory();
+    private final Map<Class, EntityMapping> mappings = new HashMap<Class, EntityMapping>();
+    private final Map<Class, EntityMetadata> metadata;
+    private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    private final List<Serializable> inserts = new ArrayList<Serializable>();
+    private final Map<Serializable, Boolean> pending = new IdentityHashMap<Serializable, Boolean>();
+    private final List<Serializable> updates = new ArrayList<Serializable>();
+    // The objects which were written or read since the last commit
+    private final Map<Serializable, Boolean> written = new IdentityHashMap<Serializable, Boolean>();
+    private EntityMapping pendingMapping;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int rowsPerStatement = 1;
+    private ImportMetrics metrics = ImportMetrics.NONE;
+
+    public JDBCBatchDataStorage(Connection connection, Metamodel metamodel) {
+        if (connection == null || metamodel == null) {
+            throw new NullPointerException();
+        }
+        this.connection = connection;
+        this.metamodel = metamodel;
+        this.metadata = JPADataStorage.readMetadata(metamodel);
+    }
+
+    /**
+     * Sets the number of objects which are written with one batch.
+     *
+     * @param batchSize The number of objects.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of rows which are inserted with one statement by using
+     * a multi row values clause. Not every database and driver supports
+     * returning the generated keys of such statements.
+     *
+     * @param rowsPerStatement The number of rows, 1 uses single row inserts.
+     */
+    public void setRowsPerStatement(int rowsPerStatement) {
+        if (rowsPerStatement < 1) {
+            throw new IllegalArgumentException("Invalid rows per statement: " + rowsPerStatement);
+        }
+        this.rowsPerStatement = rowsPerStatement;
+    }
+
+    public int getRowsPerStatement() {
+        return rowsPerStatement;
+    }
+
+    @Override
+    public Serializable getById(Class clazz, Serializable id) {
+        EntityMapping mapping = getMapping(clazz);
+        return single(clazz, query(mapping, Collections.singletonMap(mapping.getId(), (Object) id)));
+    }
+
+    @Override
+    public Serializable getByField(Class clazz, String fieldName, Serializable fieldValue) {
+        return single(clazz, getListByField(clazz, fieldName, fieldValue));
+    }
+
+    @Override
+    public Serializable getByFields(Class clazz, Map<String, Serializable> valueMap) {
+        return single(clazz, getListByFields(clazz, valueMap));
+    }
+
+    @Override
+    public List<Serializable> getListByField(Class clazz, String fieldName, Serializable fieldValue) {
+        return getListByFields(clazz, Collections.singletonMap(fieldName, fieldValue));
+    }
+
+    @Override
+    public List<Serializable> getListByFields(Class clazz, Map<String, Serializable> valueMap) {
+        EntityMapping mapping = getMapping(clazz);
+        Map<ColumnMapping, Object> where = new HashMap<ColumnMapping, Object>();
+
+        for (Map.Entry<String, Serializable> entry : valueMap.entrySet()) {
+            where.put(mapping.getColumn(entry.getKey()), entry.getValue());
+        }
+
+        return query(mapping, where);
+    }
+
+    private static Serializable single(Class clazz, List<Serializable> result) {
+        if (result.size() > 1) {
+            throw new DataStorageException("Found " + result.size() + " objects of " + clazz.getName() + " where one was expected");
+        }
+
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    private List<Serializable> query(EntityMapping mapping, Map<ColumnMapping, Object> where) {
+        checkConnected();
+        flush();
+
+        StringBuilder sql = new StringBuilder(mapping.getSelectSql());
+        List<Object> parameters = new ArrayList<Object>();
+
+        for (Map.Entry<ColumnMapping, Object> entry : where.entrySet()) {
+            sql.append(parameters.isEmpty() ? " WHERE " : " AND ").append(entry.getKey().getName());
+
+            if (entry.getValue() instanceof Collection) {
+                Collection values = (Collection) entry.getValue();
+
+                if (values.isEmpty()) {
+                    return new ArrayList<Serializable>();
+                }
+
+                sql.append(" IN (");
+                boolean first = true;
+
+                for (Object value : values) {
+                    sql.append(first ? "?" : ", ?");
+                    parameters.add(toJdbc(entry.getKey(), value));
+                    first = false;
+                }
+
+                sql.append(')');
+            } else {
+                sql.append(" = ?");
+                parameters.add(toJdbc(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        List<ColumnMapping> columns = mapping.getSelectColumns();
+        List<Serializable> result = new ArrayList<Serializable>();
+
+        try {
+            PreparedStatement ps = connection.prepareStatement(sql.toString());
+
+            try {
+                for (int i = 0; i < parameters.size(); i++) {
+                    bind(ps, i + 1, parameters.get(i));
+                }
+
+                ResultSet rs = ps.executeQuery();
+
+                try {
+                    while (rs.next()) {
+                        Serializable object = newInstance(mapping.getEntityClass());
+
+                        for (int i = 0; i < columns.size(); i++) {
+                            ColumnMapping column = columns.get(i);
+                            Object value = rs.getObject(i + 1);
+
+                            if (value != null) {
+                                column.getAccessor().set(object, column.isAssociation() ? getReference(column.getType(), (Serializable) value) : toJava(column.getType(), value));
+                            }
+                        }
+
+                        result.add(object);
+                        written.put(object, Boolean.TRUE);
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                ps.close();
+            }
+        } catch (SQLException ex) {
+            throw new DataStorageException("Could not execute " + sql, ex);
+        }
+
+        return result;
+    }
+
+    @Override
+    public Class getIdentifierType(Class clazz) {
+        EntityMetadata entityMetadata = metadata.get(clazz);
+        return entityMetadata == null ? null : entityMetadata.getIdentifierType();
+    }
+
+    @Override
+    public EntityMetadata getMetadata(Class clazz) {
+        return metadata.get(clazz);
+    }
+
+    @Override
+    public Serializable getIdentifier(Serializable object) {
+        EntityMapping mapping = getMapping(object.getClass());
+
+        if (mapping.isGeneratedId() && isPendingInsert(object)) {
+            // The identifier is only known after the insert
+            flush();
+        }
+
+        return (Serializable) mapping.getId().getAccessor().get(object);
+    }
+
+    private boolean isPendingInsert(Object object) {
+        return pending.containsKey(object) && !written.containsKey(object);
+    }
+
+    /**
+     * Lets saving the object update its row, e.g. because it was written by
+     * a subclass.
+     */
+    void setWritten(Serializable object) {
+        written.put(object, Boolean.TRUE);
+    }
+
+    /**
+     * Returns whether the object refers to a queued object with a generated
+     * identifier, whose identifier is not known before it is inserted.
+     */
+    private boolean referencesPendingInsert(EntityMapping mapping, Serializable object) {
+        if (pending.isEmpty()) {
+            return false;
+        }
+
+        for (ColumnMapping column : mapping.getColumns()) {
+            if (column.isAssociation()) {
+                Object value = column.getAccessor().get(object);
+
+                if (value != null && isPendingInsert(value) && getMapping(value.getClass()).isGeneratedId()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns a new instance of the class which only has the identifier set.
+     */
+    @Override
+    public Serializable getReference(Class clazz, Serializable id) {
+        ColumnMapping idColumn = getMapping(clazz).getId();
+        Serializable reference = newInstance(clazz);
+        idColumn.getAccessor().set(reference, toJava(idColumn.getType(), id));
+        return reference;
+    }
+
+    @Override
+    public Serializable saveObject(Serializable object) {
+        checkConnected();
+        EntityMapping mapping = getMapping(object.getClass());
+
+        if (pendingMapping != mapping || inserts.size() + updates.size() >= batchSize || referencesPendingInsert(mapping, object)) {
+            // Flushing before adding keeps an object pending when it is saved again right away
+            flush();
+            pendingMapping = mapping;
+        }
+
+        if (pending.containsKey(object)) {
+            return object;
+        }
+
+        pending.put(object, Boolean.TRUE);
+
+        if (written.containsKey(object)) {
+            updates.add(object);
+        } else {
+            inserts.add(object);
+        }
+
+        return object;
+    }
+
+    @Override
+    public void flush() {
+        checkConnected();
+
+        if (pendingMapping == null || pending.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int size = pending.size();
+
+        try {
+            int offset = 0;
+
+            if (rowsPerStatement > 1) {
+                offset = inserts.size() - inserts.size() % rowsPerStatement;
+                executeInserts(pendingMapping, inserts.subList(0, offset), rowsPerStatement);
+            }
+
+            executeInserts(pendingMapping, inserts.subList(offset, inserts.size()), 1);
+            executeUpdates(pendingMapping, updates);
+        } catch (SQLException ex) {
+            throw new DataStorageException("Could not write the objects of " + pendingMapping.getEntityClass().getName(), ex);
+        } finally {
+            inserts.clear();
+            updates.clear();
+            pending.clear();
+        }
+
+        metrics.recordFlush(size, System.nanoTime() - start);
+    }
+
+    /**
+     * Writes the pending objects and commits the connection, unless it is in
+     * auto commit mode. The written objects are forgotten afterwards.
+     */
+    @Override
+    public void commit() {
+        flush();
+
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            throw new DataStorageException("Could not commit", ex);
+        }
+
+        written.clear();
+    }
+
+    private void executeInserts(EntityMapping mapping, List<Serializable> objects, int rows) throws SQLException {
+        if (objects.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement ps = getStatement(mapping.getInsertSql(rows), mapping.isGeneratedId());
+        List<ColumnMapping> columns = mapping.getColumns();
+        int index = 1;
+
+        for (int i = 0; i < objects.size(); i++) {
+            for (ColumnMapping column : columns) {
+                bind(ps, index++, toJdbc(column, column.getAccessor().get(objects.get(i))));
+            }
+
+            if ((i + 1) % rows == 0) {
+                ps.addBatch();
+                index = 1;
+            }
+        }
+
+        ps.executeBatch();
+
+        for (Serializable object : objects) {
+            written.put(object, Boolean.TRUE);
+        }
+
+        if (mapping.isGeneratedId()) {
+            ColumnMapping id = mapping.getId();
+            ResultSet rs = ps.getGeneratedKeys();
+
+            try {
+                for (Serializable object : objects) {
+                    if (!rs.next()) {
+                        throw new DataStorageException("The driver did not return the generated keys for " + mapping.getTableName());
+                    }
+
+                    id.getAccessor().set(object, toJava(id.getType(), rs.getObject(1)));
+                }
+            } finally {
+                rs.close();
+            }
+        }
+    }
+
+    private void executeUpdates(EntityMapping mapping, List<Serializable> objects) throws SQLException {
+        if (objects.isEmpty()) {
+            return;
+        }
+
+        PreparedStatement ps = getStatement(mapping.getUpdateSql(), false);
+        ColumnMapping id = mapping.getId();
+
+        for (Serializable object : objects) {
+            int index = 1;
+
+            for (ColumnMapping column : mapping.getColumns()) {
+                if (column != id) {
+                    bind(ps, index++, toJdbc(column, column.getAccessor().get(object)));
+                }
+            }
+
+            bind(ps, index, id.getAccessor().get(object));
+            ps.addBatch();
+        }
+
+        int[] counts = ps.executeBatch();
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new DataStorageException("The row of " + objects.get(i) + " with the identifier " + id.getAccessor().get(objects.get(i)) + " does not exist in " + mapping.getTableName());
+            }
+        }
+    }
+
+    private PreparedStatement getStatement(String sql, boolean generatedKeys) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+
+        if (ps == null) {
+            ps = generatedKeys ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(sql);
+            statements.put(sql, ps);
+        }
+
+        return ps;
+    }
+
+    private static void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.NULL);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    /**
+     * Converts the value of an attribute to a value which is supported by
+     * JDBC drivers.
+     */
+    static Object toJdbc(ColumnMapping column, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (column.isAssociation() && column.getType().isInstance(value)) {
+            return column.getTargetId().get(value);
+        }
+        if (value instanceof Enum) {
+            return column.isEnumString() ? ((Enum) value).name() : (Object) ((Enum) value).ordinal();
+        }
+        if (value instanceof Calendar) {
+            return new Timestamp(((Calendar) value).getTimeInMillis());
+        }
+        if (value instanceof java.util.Date && !(value instanceof java.sql.Date || value instanceof java.sql.Time || value instanceof Timestamp)) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+
+        return value;
+    }
+
+    /**
+     * Converts a value which was read by JDBC to the type of an attribute.
+     */
+    static Object toJava(Class type, Object value) {
+        if (value == null || type.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            Number n = (Number) value;
+
+            if (Integer.class.equals(type) || int.class.equals(type)) {
+                return n.intValue();
+            } else if (Long.class.equals(type) || long.class.equals(type)) {
+                return n.longValue();
+            } else if (Short.class.equals(type) || short.class.equals(type)) {
+                return n.shortValue();
+            } else if (Byte.class.equals(type) || byte.class.equals(type)) {
+                return n.byteValue();
+            } else if (Double.class.equals(type) || double.class.equals(type)) {
+                return n.doubleValue();
+            } else if (Float.class.equals(type) || float.class.equals(type)) {
+                return n.floatValue();
+            } else if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+                return n.intValue() != 0;
+            } else if (BigDecimal.class.equals(type)) {
+                return new BigDecimal(n.toString());
+            } else if (BigInteger.class.equals(type)) {
+                return new BigInteger(n.toString());
+            } else if (type.isEnum()) {
+                return type.getEnumConstants()[n.intValue()];
+            }
+        }
+        if (value instanceof String) {
+            if (type.isEnum()) {
+                return Enum.valueOf(type, (String) value);
+            } else if (Character.class.equals(type) || char.class.equals(type)) {
+                return ((String) value).charAt(0);
+            }
+        }
+        if (value instanceof java.util.Date) {
+            if (java.util.Date.class.equals(type)) {
+                return new java.util.Date(((java.util.Date) value).getTime());
+            } else if (Calendar.class.isAssignableFrom(type)) {
+                Calendar calendar = new GregorianCalendar();
+                calendar.setTime((java.util.Date) value);
+                return calendar;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns whether a generated identifier was not assigned yet, which is
+     * also the case for a primitive identifier of 0.
+     */
+    static boolean isUnset(Object id) {
+        return id == null || (id instanceof Number && ((Number) id).longValue() == 0);
+    }
+
+    private static Serializable newInstance(Class clazz) {
+        try {
+            return (Serializable) clazz.newInstance();
+        } catch (InstantiationException ex) {
+            throw new DataStorageException("Could not instantiate " + clazz.getName(), ex);
+        } catch (IllegalAccessException ex) {
+            throw new DataStorageException("Could not instantiate " + clazz.getName(), ex);
+        }
+    }
+
+    EntityMapping getMapping(Class clazz) {
+        EntityMapping mapping = mappings.get(clazz);
+
+        if (mapping == null) {
+            mapping = new EntityMapping(clazz, metamodel, accessorFactory);
+            mappings.put(clazz, mapping);
+        }
+
+        return mapping;
+    }
+
+    void checkConnected() {
+        if (connection == null) {
+            throw new IllegalStateException("Connection closed!");
+        }
+    }
+
+    /**
+     * Writes the pending objects and closes the statements and the connection.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ex) {
+                    log.log(Level.WARNING, ex.getMessage(), ex);
+                }
+            }
+
+            statements.clear();
+            written.clear();
+
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                log.log(Level.WARNING, ex.getMessage(), ex);
+            }
+
+            connection = null;
+        }
+    }
+
+    @Override
+    public boolean isManaged(Class clazz) {
+        return metadata.containsKey(clazz);
+    }
+
+    @Override
+    public void setMetrics(ImportMetrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -4,101 +4,357 @@
 package com.blazebit.data.importer.storage;
 
 import com.blazebit.data.importer.DataStorage;
+import com.blazebit.data.importer.EntityMetadata;
+import com.blazebit.data.importer.metrics.ImportMetrics;
 import java.io.Serializable;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.persistence.EntityManager;
-import javax.persistence.Query;
+import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
 
 /**
  * Simple JPA implementation of a datastorage.
+ * The persistence context is flushed after a number of saved objects and
+ * cleared after a number of saved objects, so it doesn't grow unbounded. When
+ * the persistence unit configures a JDBC batch size, the flush size is
+ * aligned to it, so every flush writes full batches.
  *
  * @author Christian Beikov
  */
 public class JPADataStorage implements DataStorage {
 
     private static final Logger log = Logger.getLogger(JPADataStorage.class.getName());
-    private static final boolean DEBUG = false;
+    public static final int DEFAULT_FLUSH_SIZE = 10;
+    private static final String[] BATCH_SIZE_PROPERTIES = {"hibernate.jdbc.batch_size", "eclipselink.jdbc.batch-writing.size"};
     private EntityManager session;
     private transient Class lastClass;
-    private Stack savedObject = new Stack();
     private int saveCounter = 0;
+    private int clearCounter = 0;
+    private int flushSize = DEFAULT_FLUSH_SIZE;
+    private int clearSize = DEFAULT_FLUSH_SIZE;
+    private int jdbcBatchSize = 0;
+    private boolean flushOnClassChange = true;
+    private SaveStrategy saveStrategy = SaveStrategy.MERGE;
+    private boolean writeAwareReads = false;
+    private FlushModeType previousFlushMode;
+    private final Set<Class> pendingTypes = new HashSet<Class>();
+    private final Map<Class, Set<Class>> affectedTypes = new HashMap<Class, Set<Class>>();
+    private final Map<String, TypedQuery> queries = new HashMap<String, TypedQuery>();
+    private final Map<Class, EntityMetadata> metadata;
+    private ImportMetrics metrics = ImportMetrics.NONE;
+
+    /**
+     * Decides how objects are saved.
+     */
+    public static enum SaveStrategy {
+
+        /**
+         * Merges every object, which loads the state of objects with an
+         * identifier from the database.
+         */
+        MERGE,
+        /**
+         * Persists new objects, which have no identifier yet and are not
+         * managed, without loading anything. Objects which are saved again,
+         * e.g. after the persistence context was cleared, are merged.
+         */
+        PERSIST
+    }
 
     public JPADataStorage(EntityManager session) {
         this.session = session;
+        this.metadata = readMetadata(session.getEntityManagerFactory().getMetamodel());
+        Integer batchSize = getJdbcBatchSize(session);
+
+        if (batchSize != null && batchSize > 1) {
+            setJdbcBatchSize(batchSize);
+            this.flushSize = batchSize;
+            this.clearSize = batchSize;
+        }
+    }
+
+    /**
+     * Reads the metadata of all entities of the metamodel. Associations of
+     * embedded attributes are prefixed with the name of the attribute.
+     */
+    static Map<Class, EntityMetadata> readMetadata(Metamodel metamodel) {
+        Map<Class, EntityMetadata> metadata = new HashMap<Class, EntityMetadata>();
+
+        for (EntityType entityType : metamodel.getEntities()) {
+            String identifierName = null;
+            String versionName = null;
+            Map<String, Class> associations = new LinkedHashMap<String, Class>();
+
+            for (Object o : entityType.getSingularAttributes()) {
+                SingularAttribute attribute = (SingularAttribute) o;
+
+                if (attribute.isId()) {
+                    identifierName = attribute.getName();
+                } else if (attribute.isVersion()) {
+                    versionName = attribute.getName();
+                }
+            }
+
+            collectAssociations(metamodel, entityType, "", associations);
+            Class identifierType = entityType.getIdType() == null ? null : entityType.getIdType().getJavaType();
+            // Composite identifiers have no single identifier attribute
+            metadata.put(entityType.getJavaType(), new EntityMetadata(entityType.getJavaType(), identifierType, entityType.hasSingleIdAttribute() ? identifierName : null, versionName, associations));
+        }
+
+        return metadata;
+    }
+
+    private static void collectAssociations(Metamodel metamodel, ManagedType managedType, String prefix, Map<String, Class> associations) {
+        for (Object o : managedType.getAttributes()) {
+            Attribute attribute = (Attribute) o;
+
+            if (attribute.isAssociation()) {
+                if (attribute.isCollection()) {
+                    associations.put(prefix + attribute.getName(), ((PluralAttribute) attribute).getElementType().getJavaType());
+                } else {
+                    associations.put(prefix + attribute.getName(), attribute.getJavaType());
+                }
+            } else if (attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.EMBEDDED && prefix.length() == 0) {
+                collectAssociations(metamodel, metamodel.managedType(attribute.getJavaType()), attribute.getName() + ".", associations);
+            }
+        }
+    }
+
+    private static Integer getJdbcBatchSize(EntityManager session) {
+        Map<String, Object> properties = session.getEntityManagerFactory().getProperties();
+
+        for (String name : BATCH_SIZE_PROPERTIES) {
+            Object value = properties.get(name);
+
+            if (value != null) {
+                try {
+                    return Integer.valueOf(value.toString().trim());
+                } catch (NumberFormatException ex) {
+                    log.log(Level.WARNING, "Invalid batch size " + value + " in " + name);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Sets the number of saved objects after which the persistence context is
+     * flushed. The size is rounded up to a multiple of the JDBC batch size.
+     * 
+     * @param flushSize The number of objects.
+     */
+    public void setFlushSize(int flushSize) {
+        if (flushSize < 1) {
+            throw new IllegalArgumentException("Invalid flush size: " + flushSize);
+        }
+        this.flushSize = align(flushSize);
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    /**
+     * Sets the number of saved objects after which the persistence context is
+     * cleared. The persistence context is only cleared together with a
+     * flush, so a clear size smaller than the flush size clears on every
+     * flush.
+     * 
+     * @param clearSize The number of objects.
+     */
+    public void setClearSize(int clearSize) {
+        if (clearSize < 1) {
+            throw new IllegalArgumentException("Invalid clear size: " + clearSize);
+        }
+        this.clearSize = clearSize;
+    }
+
+    public int getClearSize() {
+        return clearSize;
+    }
+
+    /**
+     * Sets the JDBC batch size to which the flush size is aligned. It is read
+     * from the properties of the persistence unit by default.
+     * 
+     * @param jdbcBatchSize The JDBC batch size, 0 disables the alignment.
+     */
+    public void setJdbcBatchSize(int jdbcBatchSize) {
+        if (jdbcBatchSize < 0) {
+            throw new IllegalArgumentException("Invalid JDBC batch size: " + jdbcBatchSize);
+        }
+        this.jdbcBatchSize = jdbcBatchSize;
+        this.flushSize = align(flushSize);
+    }
+
+    public int getJdbcBatchSize() {
+        return jdbcBatchSize;
+    }
+
+    private int align(int size) {
+        if (jdbcBatchSize < 2) {
+            return size;
+        }
+
+        return (size + jdbcBatchSize - 1) / jdbcBatchSize * jdbcBatchSize;
+    }
+
+    /**
+     * Sets whether the persistence context is flushed when an object of
+     * another class than the previous one is saved.
+     * 
+     * @param flushOnClassChange True to flush on a class change.
+     */
+    public void setFlushOnClassChange(boolean flushOnClassChange) {
+        this.flushOnClassChange = flushOnClassChange;
+    }
+
+    public void setSaveStrategy(SaveStrategy saveStrategy) {
+        if (saveStrategy == null) {
+            throw new NullPointerException();
+        }
+        this.saveStrategy = saveStrategy;
+    }
+
+    public SaveStrategy getSaveStrategy() {
+        return saveStrategy;
+    }
+
+    /**
+     * Enables write aware reads. Queries only flush the persistence context
+     * when objects of the queried class, or of a class which may be
+     * cascaded from a saved object, were saved since the last flush. Finding
+     * objects by identifier never flushes, since the persistence context is
+     * asked first. The flush mode of the entity manager is set to
+     * {@link FlushModeType#COMMIT} meanwhile, so the JPA provider doesn't
+     * flush before queries on its own.
+     * 
+     * @param writeAwareReads True to enable write aware reads.
+     */
+    public void setWriteAwareReads(boolean writeAwareReads) {
+        if (session == null) {
+            throw new IllegalStateException("Session not connected!");
+        }
+        if (writeAwareReads && !this.writeAwareReads) {
+            previousFlushMode = session.getFlushMode();
+            session.setFlushMode(FlushModeType.COMMIT);
+        } else if (!writeAwareReads && this.writeAwareReads) {
+            session.setFlushMode(previousFlushMode);
+        }
+
+        this.writeAwareReads = writeAwareReads;
+    }
+
+    public boolean isWriteAwareReads() {
+        return writeAwareReads;
     }
 
     @Override
     public Serializable getByField(Class clazz, String fieldName, Serializable fieldValue) {
-        return (Serializable) session.createQuery(getCriteria(clazz, fieldName, fieldValue)).getSingleResult();
+        return (Serializable) getQuery(clazz, Collections.singletonMap(fieldName, fieldValue)).getSingleResult();
     }
 
     @Override
     public Serializable getByFields(Class clazz, Map<String, Serializable> valueMap) {
-        return (Serializable) session.createQuery(getCriteria(clazz, valueMap)).getSingleResult();
+        return (Serializable) getQuery(clazz, valueMap).getSingleResult();
     }
 
     @Override
     public List<Serializable> getListByField(Class clazz, String fieldName, Serializable fieldValue) {
-        return session.createQuery(getCriteria(clazz, fieldName, fieldValue)).getResultList();
+        return getQuery(clazz, Collections.singletonMap(fieldName, fieldValue)).getResultList();
     }
 
     @Override
     public List<Serializable> getListByFields(Class clazz, Map<String, Serializable> valueMap) {
-        return session.createQuery(getCriteria(clazz, valueMap)).getResultList();
+        return getQuery(clazz, valueMap).getResultList();
     }
 
-    private CriteriaQuery getCriteria(Class clazz, Map<String, Serializable> valueMap) {
+    /**
+     * Returns the query for the given class and fields with the values bound
+     * as parameters. Queries are compiled once per class, fields and kind of
+     * their values and reused afterwards. The same query serves single and
+     * list results. Collection values are compared with IN, null values with
+     * IS NULL.
+     */
+    private TypedQuery getQuery(Class clazz, Map<String, Serializable> valueMap) {
         if (session == null) {
             throw new IllegalStateException("Session not connected!");
         }
-        flush();
+        flushPending(clazz);
 
-        CriteriaBuilder cb = session.getCriteriaBuilder();
-        CriteriaQuery cq = cb.createQuery();
-        Root r = cq.from(clazz);
-        cq.select(r);
-        List<Predicate> predicates = new ArrayList<Predicate>();
-
-        for (Map.Entry<String, Serializable> entry : valueMap.entrySet()) {
-            if (entry.getValue() instanceof Collection) {
-                predicates.add(r.get(entry.getKey()).in((Collection) entry.getValue()));
-            } else {
-                predicates.add(cb.equal(r.get(entry.getKey()), entry.getValue()));
-            }
+        List<String> fieldNames = new ArrayList<String>(valueMap.keySet());
+        Collections.sort(fieldNames);
+        StringBuilder sb = new StringBuilder(clazz.getName());
+
+        for (String fieldName : fieldNames) {
+            Object value = valueMap.get(fieldName);
+            sb.append('|').append(fieldName).append(value == null ? " is null" : value instanceof Collection ? " in" : " =");
         }
-        
-        cq.where(cb.and(predicates.toArray(new Predicate[0])));
-        return cq;
-    }
 
-    private CriteriaQuery getCriteria(Class clazz, String fieldName, Serializable fieldValue) {
-        if (session == null) {
-            throw new IllegalStateException("Session not connected!");
+        String key = sb.toString();
+        TypedQuery query = queries.get(key);
+        boolean cached = query != null;
+
+        if (query == null) {
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+            CriteriaQuery cq = cb.createQuery(clazz);
+            Root r = cq.from(clazz);
+            cq.select(r);
+            List<Predicate> predicates = new ArrayList<Predicate>();
+
+            for (int i = 0; i < fieldNames.size(); i++) {
+                Path path = r.get(fieldNames.get(i));
+                Object value = valueMap.get(fieldNames.get(i));
+
+                if (value == null) {
+                    predicates.add(path.isNull());
+                } else if (value instanceof Collection) {
+                    Expression<Collection<?>> parameter = (Expression) cb.parameter(Collection.class, "p" + i);
+                    predicates.add(path.in(parameter));
+                } else {
+                    predicates.add(cb.equal(path, cb.parameter(path.getJavaType(), "p" + i)));
+                }
+            }
+
+            cq.where(cb.and(predicates.toArray(new Predicate[0])));
+            query = session.createQuery(cq);
+            queries.put(key, query);
         }
-        flush();
 
-        CriteriaBuilder cb = session.getCriteriaBuilder();
-        CriteriaQuery cq = cb.createQuery();
-        Root r = cq.from(clazz);
-        cq.select(r);
-        
-        if (fieldValue instanceof Collection) {
-            return cq.where(r.get(fieldName).in((Collection) fieldValue));
-        } else {
-            return cq.where(cb.equal(r.get(fieldName), fieldValue));
+        for (int i = 0; i < fieldNames.size(); i++) {
+            Object value = valueMap.get(fieldNames.get(i));
+
+            if (value != null) {
+                query.setParameter("p" + i, value);
+            }
         }
+
+        metrics.recordQuery(clazz.getSimpleName(), cached);
+        return query;
     }
 
     @Override
@@ -106,7 +362,9 @@ public class JPADataStorage implements DataStorage {
         if (session == null) {
             throw new IllegalStateException("Session not connected!");
         }
-        flush();
+        if (!writeAwareReads) {
+            flushPending(clazz);
+        }
         return (Serializable) session.find(clazz, id);
     }
 
@@ -121,122 +379,181 @@ public class JPADataStorage implements DataStorage {
             if (lastClass == null) {
                 lastClass = object.getClass();
             }
-            if (!lastClass.equals(object.getClass())) {
+            if (flushOnClassChange && !lastClass.equals(object.getClass())) {
                 log.log(Level.FINE, "Flushing " + lastClass);
-                flush();
+                flush(true);
             }
             lastClass = object.getClass();
-            
-            if(DEBUG){
-                if (stackContainsObject(object)) {
-                    log.log(Level.FINE, "This was already created!");
-                }
-            }
-            
-            ret = session.merge(object);
+            ret = save(object);
+            pendingTypes.addAll(getAffectedTypes(object.getClass()));
+            clearCounter++;
 
-            if (++saveCounter > 10) {
-                flush();
+            if (++saveCounter >= flushSize) {
+                flush(clearCounter >= clearSize);
             }
-            
-            if(DEBUG){
-                if (object != null) {
-                    savedObject.push(object);
-                }
-            }
-            
+
             return ret;
         } catch (RuntimeException e) {
             throw e;
         }
     }
 
+    private Serializable save(Serializable object) {
+        switch (saveStrategy) {
+            case PERSIST:
+                if (session.contains(object)) {
+                    return object;
+                }
+
+                Object id = session.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(object);
+
+                // A primitive identifier of 0 is not assigned yet
+                if (id == null || (id instanceof Number && ((Number) id).longValue() == 0)) {
+                    session.persist(object);
+                    return object;
+                }
+
+                return session.merge(object);
+            default:
+                return session.merge(object);
+        }
+    }
+
     @Override
-    public Class getIdentifierType(Class clazz) {
-        try {
-            return session.getEntityManagerFactory().getMetamodel().entity(clazz).getIdType().getJavaType();
-        } catch (NullPointerException nl) {
-            return null;
+    public Serializable getIdentifier(Serializable object) {
+        if (session == null) {
+            throw new IllegalStateException("Session not connected!");
         }
+        return (Serializable) session.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(object);
+    }
+
+    @Override
+    public Serializable getReference(Class clazz, Serializable id) {
+        if (session == null) {
+            throw new IllegalStateException("Session not connected!");
+        }
+        return (Serializable) session.getReference(clazz, id);
+    }
+
+    @Override
+    public Class getIdentifierType(Class clazz) {
+        EntityMetadata entityMetadata = metadata.get(clazz);
+        return entityMetadata == null ? null : entityMetadata.getIdentifierType();
+    }
 
+    @Override
+    public EntityMetadata getMetadata(Class clazz) {
+        return metadata.get(clazz);
+    }
+
+    EntityManager getEntityManager() {
+        return session;
     }
 
     @Override
     public void close() {
+        queries.clear();
         session.close();
         session = null;
     }
 
+    /**
+     * Flushes and clears the persistence context.
+     */
     public void flush() {
-        if (session == null) {
-            throw new IllegalStateException("Session not connected!");
-        }
-        log.log(Level.FINE, "MANUAL FLUSH " + lastClass);
-        session.flush();
-        session.clear();
-        saveCounter = 0;
+        flush(true);
     }
 
+    /**
+     * Flushes and clears the persistence context, commits the transaction and
+     * begins a new one. This requires a resource local entity manager.
+     */
     @Override
-    public boolean isManaged(Class clazz) {
-        try{
-            return session.getEntityManagerFactory().getMetamodel().entity(clazz) != null;
-        }catch(IllegalArgumentException ex){
-            return false;
+    public void commit() {
+        flush();
+        EntityTransaction tx = session.getTransaction();
+
+        if (tx.isActive()) {
+            tx.commit();
         }
+
+        tx.begin();
     }
 
-    private boolean stackContainsObject(Serializable object) {
-        Class clazz = object.getClass();
-        Method[] getters = getNoneIdAndNoneCollectionGetters(clazz);
+    /**
+     * Flushes the objects which were saved since the last flush before a
+     * query for the given class, the persistence context is only cleared when
+     * the clear size is reached.
+     */
+    private void flushPending(Class clazz) {
+        if (saveCounter > 0 && (!writeAwareReads || isAffected(clazz))) {
+            flush(clearCounter >= clearSize);
+        }
+    }
 
-        try {
-            for (Object o : savedObject) {
-                if (clazz.isInstance(o)) {
-                    boolean equals = true;
-                    for (Method m : getters) {
-                        Object o1 = m.invoke(object);
-                        Object o2 = m.invoke(o);
-                        
-                        if((o1 == null && o2 != null) || (o1 != null && o2 == null)){
-                            equals = false;
-                            break;
-                        } else if(o1 == null && o2 == null){
-                            continue;
-                        } else if(!m.invoke(object).equals(m.invoke(o))){
-                            equals = false;
-                            break;
-                        }
-                    }
-                    
-                    if(!equals)
-                        continue;
-                    return true;
-                }
+    private boolean isAffected(Class clazz) {
+        for (Class pendingType : pendingTypes) {
+            if (clazz.isAssignableFrom(pendingType) || pendingType.isAssignableFrom(clazz)) {
+                return true;
             }
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
         }
-        
+
         return false;
     }
 
-    private Method[] getNoneIdAndNoneCollectionGetters(Class clazz) {
-        List<Method> methods = new ArrayList<Method>();
-        Class idType = getIdentifierType(clazz);
-        String idName = session.getEntityManagerFactory().getMetamodel().entity(clazz).getId(idType).getName();
-        
-        if(!idType.equals(int.class) && !idType.equals(Integer.class))
-            idName = null;
-        
-        for(Method m : clazz.getMethods()){
-            if(m.getName().startsWith("get") && !m.getName().substring(3).equalsIgnoreCase(idName)){
-                if(Set.class.equals(m.getReturnType()) || Map.class.equals(m.getReturnType()))
-                    continue;
-                methods.add(m);
-            }
+    /**
+     * Returns the given class and the classes which are reachable through
+     * its associations, since saving an object may cascade to them.
+     */
+    private Set<Class> getAffectedTypes(Class clazz) {
+        Set<Class> types = affectedTypes.get(clazz);
+
+        if (types == null) {
+            types = new HashSet<Class>();
+            collectAffectedTypes(clazz, types);
+            affectedTypes.put(clazz, types);
         }
-        
-        return methods.toArray(new Method[0]);
+
+        return types;
+    }
+
+    private void collectAffectedTypes(Class clazz, Set<Class> types) {
+        EntityMetadata entityMetadata = metadata.get(clazz);
+
+        if (!types.add(clazz) || entityMetadata == null) {
+            return;
+        }
+
+        for (Class associated : entityMetadata.getAssociations().values()) {
+            collectAffectedTypes(associated, types);
+        }
+    }
+
+    private void flush(boolean clear) {
+        if (session == null) {
+            throw new IllegalStateException("Session not connected!");
+        }
+        log.log(Level.FINE, "MANUAL FLUSH " + lastClass);
+        long start = System.nanoTime();
+        session.flush();
+
+        if (clear) {
+            session.clear();
+            clearCounter = 0;
+        }
+
+        metrics.recordFlush(saveCounter, System.nanoTime() - start);
+        saveCounter = 0;
+        pendingTypes.clear();
+    }
+
+    @Override
+    public void setMetrics(ImportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean isManaged(Class clazz) {
+        return metadata.containsKey(clazz);
     }
 }
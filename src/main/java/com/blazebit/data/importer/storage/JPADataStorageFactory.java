@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.DataStorage;
+import com.blazebit.data.importer.DataStorageFactory;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+
+/**
+ * Creates a JPA datastorage with its own entity manager for every worker.
+ * Each datastorage runs within its own resource local transaction which is
+ * committed when the datastorage is released successfully and rolled back
+ * otherwise.
+ *
+ * @author Christian Beikov
+ */
+public class JPADataStorageFactory implements DataStorageFactory {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private int flushSize;
+    private int clearSize;
+    private JPADataStorage.SaveStrategy saveStrategy = JPADataStorage.SaveStrategy.MERGE;
+    private boolean writeAwareReads;
+
+    public JPADataStorageFactory(EntityManagerFactory entityManagerFactory) {
+        if (entityManagerFactory == null) {
+            throw new NullPointerException();
+        }
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Sets the flush size of the created datastorages.
+     * 
+     * @param flushSize The number of objects, 0 uses the default.
+     * @see JPADataStorage#setFlushSize(int)
+     */
+    public void setFlushSize(int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    /**
+     * Sets the clear size of the created datastorages.
+     * 
+     * @param clearSize The number of objects, 0 uses the default.
+     * @see JPADataStorage#setClearSize(int)
+     */
+    public void setClearSize(int clearSize) {
+        this.clearSize = clearSize;
+    }
+
+    public void setSaveStrategy(JPADataStorage.SaveStrategy saveStrategy) {
+        if (saveStrategy == null) {
+            throw new NullPointerException();
+        }
+        this.saveStrategy = saveStrategy;
+    }
+
+    /**
+     * Enables write aware reads for the created datastorages.
+     * 
+     * @param writeAwareReads True to enable write aware reads.
+     * @see JPADataStorage#setWriteAwareReads(boolean)
+     */
+    public void setWriteAwareReads(boolean writeAwareReads) {
+        this.writeAwareReads = writeAwareReads;
+    }
+
+    @Override
+    public DataStorage createDataStorage() {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        em.getTransaction().begin();
+        JPADataStorage storage = new JPADataStorage(em);
+
+        if (flushSize > 0) {
+            storage.setFlushSize(flushSize);
+        }
+        if (clearSize > 0) {
+            storage.setClearSize(clearSize);
+        }
+
+        storage.setSaveStrategy(saveStrategy);
+        storage.setWriteAwareReads(writeAwareReads);
+        return storage;
+    }
+
+    @Override
+    public void releaseDataStorage(DataStorage storage, boolean successful) {
+        JPADataStorage jpaStorage = (JPADataStorage) storage;
+        EntityTransaction tx = jpaStorage.getEntityManager().getTransaction();
+
+        try {
+            if (successful) {
+                jpaStorage.flush();
+                tx.commit();
+            }
+        } finally {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+
+            jpaStorage.close();
+        }
+    }
+}
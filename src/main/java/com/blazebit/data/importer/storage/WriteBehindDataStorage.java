@@ -0,0 +1,363 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.DataStorage;
+import com.blazebit.data.importer.EntityMetadata;
+import com.blazebit.data.importer.metrics.ImportMetrics;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A datastorage which saves objects asynchronously with another datastorage,
+ * so the importer can populate the next objects while the previous ones are
+ * written. Saved objects are put into a bounded queue which is drained by a
+ * single writer thread in batches, the importer blocks when the queue is
+ * full. The objects are written in the order in which they were saved.
+ *
+ * Queries, references, flushes and commits wait until the queue is drained,
+ * so they see all objects which were saved before, and run while the writer
+ * is idle since datastorages are not thread safe. Requesting the identifier
+ * of a queued object waits until it is written, since the underlying
+ * datastorage may assign it then. The metadata methods of the underlying
+ * datastorage and {@link DataStorage#getIdentifier(Serializable)} for
+ * objects which are not queued are called concurrently with the writer.
+ *
+ * The underlying datastorage has to save the given objects instead of copies,
+ * e.g. {@link JPADataStorage} with {@link JPADataStorage.SaveStrategy#PERSIST}
+ * or {@link JDBCBatchDataStorage}, because saveObject returns the object
+ * before it is written. A failure of the writer is thrown by the next
+ * invocation, the objects queued after the failed one are dropped.
+ *
+ * @author Christian Beikov
+ */
+public class WriteBehindDataStorage implements DataStorage {
+
+    private static final Logger log = Logger.getLogger(WriteBehindDataStorage.class.getName());
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    private static final Serializable STOP = new Serializable() {
+    };
+    private final DataStorage delegate;
+    private final BlockingQueue<Serializable> queue;
+    private final int batchSize;
+    // Held by the writer while it saves a batch and by every other access to the delegate
+    private final Object delegateLock = new Object();
+    // Only guards the bookkeeping, so saving is not blocked while a batch is written
+    private final Object lock = new Object();
+    // Guarded by lock
+    private final Map<Serializable, Integer> pending = new IdentityHashMap<Serializable, Integer>();
+    private int inFlight;
+    private volatile Throwable failure;
+    private final Thread writer;
+
+    public WriteBehindDataStorage(DataStorage delegate) {
+        this(delegate, DEFAULT_QUEUE_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a datastorage and starts the writer thread.
+     *
+     * @param delegate The datastorage which writes the objects.
+     * @param queueSize The number of objects which can be queued before saving blocks.
+     * @param batchSize The maximum number of objects which are written without releasing the datastorage.
+     */
+    public WriteBehindDataStorage(DataStorage delegate, int queueSize, int batchSize) {
+        if (delegate == null) {
+            throw new NullPointerException();
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Invalid queue size: " + queueSize);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<Serializable>(queueSize);
+        this.batchSize = batchSize;
+        this.writer = new Thread(new Writer(), "WriteBehindDataStorage-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public DataStorage getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Serializable saveObject(Serializable object) {
+        checkFailure();
+
+        synchronized (lock) {
+            Integer count = pending.get(object);
+            pending.put(object, count == null ? 1 : count + 1);
+            inFlight++;
+        }
+
+        try {
+            queue.put(object);
+        } catch (InterruptedException ex) {
+            synchronized (lock) {
+                written(object);
+            }
+
+            Thread.currentThread().interrupt();
+            throw new DataStorageException("Interrupted while saving " + object, ex);
+        }
+
+        return object;
+    }
+
+    /**
+     * Waits until the queued objects are written, the lock must be held.
+     */
+    private void awaitWrites() {
+        try {
+            while (inFlight > 0 && failure == null) {
+                lock.wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataStorageException("Interrupted while waiting for the queued objects", ex);
+        }
+
+        checkFailure();
+    }
+
+    /**
+     * Removes an object from the pending objects, the lock must be held.
+     */
+    private void written(Serializable object) {
+        Integer count = pending.remove(object);
+
+        if (count != null && count > 1) {
+            pending.put(object, count - 1);
+        }
+
+        inFlight--;
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+
+        if (t != null) {
+            throw new DataStorageException("The writer failed", t);
+        }
+    }
+
+    @Override
+    public Serializable getById(Class clazz, Serializable id) {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            return delegate.getById(clazz, id);
+        }
+    }
+
+    @Override
+    public Serializable getByField(Class clazz, String fieldName, Serializable fieldValue) {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            return delegate.getByField(clazz, fieldName, fieldValue);
+        }
+    }
+
+    @Override
+    public Serializable getByFields(Class clazz, Map<String, Serializable> valueMap) {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            return delegate.getByFields(clazz, valueMap);
+        }
+    }
+
+    @Override
+    public List<Serializable> getListByField(Class clazz, String fieldName, Serializable fieldValue) {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            return delegate.getListByField(clazz, fieldName, fieldValue);
+        }
+    }
+
+    @Override
+    public List<Serializable> getListByFields(Class clazz, Map<String, Serializable> valueMap) {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            return delegate.getListByFields(clazz, valueMap);
+        }
+    }
+
+    @Override
+    public Class getIdentifierType(Class clazz) {
+        return delegate.getIdentifierType(clazz);
+    }
+
+    @Override
+    public EntityMetadata getMetadata(Class clazz) {
+        return delegate.getMetadata(clazz);
+    }
+
+    /**
+     * Returns the identifier of the object. If the object is queued, this
+     * waits until it is written.
+     */
+    @Override
+    public Serializable getIdentifier(Serializable object) {
+        boolean queued;
+
+        synchronized (lock) {
+            queued = pending.containsKey(object);
+
+            if (queued) {
+                awaitWrites();
+            }
+        }
+
+        if (!queued) {
+            return delegate.getIdentifier(object);
+        }
+        synchronized (delegateLock) {
+            return delegate.getIdentifier(object);
+        }
+    }
+
+    @Override
+    public Serializable getReference(Class clazz, Serializable id) {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            return delegate.getReference(clazz, id);
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            delegate.flush();
+        }
+    }
+
+    @Override
+    public void commit() {
+        synchronized (lock) {
+            awaitWrites();
+        }
+        synchronized (delegateLock) {
+            delegate.commit();
+        }
+    }
+
+    /**
+     * Waits for the queued objects, stops the writer and closes the
+     * underlying datastorage.
+     */
+    @Override
+    public void close() {
+        try {
+            synchronized (lock) {
+                awaitWrites();
+            }
+        } finally {
+            try {
+                queue.put(STOP);
+                writer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                log.log(Level.WARNING, "Interrupted while stopping the writer", ex);
+            } finally {
+                delegate.close();
+            }
+        }
+    }
+
+    @Override
+    public boolean isManaged(Class clazz) {
+        return delegate.isManaged(clazz);
+    }
+
+    @Override
+    public void setMetrics(ImportMetrics metrics) {
+        synchronized (delegateLock) {
+            delegate.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Takes the queued objects in batches and saves them until it is stopped.
+     * After a failure the remaining objects are only taken, so threads which
+     * wait for a free place in the queue are released.
+     */
+    private class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            List<Serializable> batch = new ArrayList<Serializable>(batchSize);
+            boolean stopped = false;
+
+            while (!stopped) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException ex) {
+                    log.log(Level.SEVERE, "The writer was interrupted", ex);
+
+                    synchronized (lock) {
+                        failure = ex;
+                        lock.notifyAll();
+                    }
+
+                    // The queued objects are still taken, until the writer is stopped
+                    continue;
+                }
+
+                queue.drainTo(batch, batchSize - 1);
+
+                synchronized (delegateLock) {
+                    try {
+                        for (Serializable object : batch) {
+                            if (object == STOP) {
+                                stopped = true;
+                            } else if (failure == null) {
+                                delegate.saveObject(object);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        log.log(Level.SEVERE, "Could not write the queued objects", t);
+                        failure = t;
+                    }
+                }
+                synchronized (lock) {
+                    for (Serializable object : batch) {
+                        if (object != STOP) {
+                            written(object);
+                        }
+                    }
+
+                    lock.notifyAll();
+                }
+
+                batch.clear();
+            }
+        }
+    }
+}
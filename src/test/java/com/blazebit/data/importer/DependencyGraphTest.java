@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class DependencyGraphTest {
+
+    private static class A {
+    }
+
+    private static class B {
+    }
+
+    private static class C {
+    }
+
+    private static class D {
+    }
+
+    @Test
+    public void testTopologicalOrderKeepsInsertionOrderOfIndependentClasses() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addNode(A.class);
+        graph.addNode(B.class);
+        graph.addNode(C.class);
+        graph.addDependency(A.class, C.class);
+
+        assertEquals(Arrays.asList(B.class, C.class, A.class), graph.getTopologicalOrder());
+    }
+
+    @Test
+    public void testLevels() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addDependency(A.class, B.class);
+        graph.addDependency(A.class, C.class);
+        graph.addDependency(B.class, D.class);
+        graph.addDependency(C.class, C.class);
+
+        List<List<Class>> levels = graph.getLevels();
+        assertEquals(3, levels.size());
+        assertEquals(Arrays.asList(C.class, D.class), levels.get(0));
+        assertEquals(Arrays.asList(B.class), levels.get(1));
+        assertEquals(Arrays.asList(A.class), levels.get(2));
+    }
+
+    @Test(expected = DataDependencyException.class)
+    public void testCycleIsDetected() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addDependency(A.class, B.class);
+        graph.addDependency(B.class, C.class);
+        graph.addDependency(C.class, A.class);
+        graph.getTopologicalOrder();
+    }
+
+    @Test
+    public void testAcyclicDependencyIsSkippedOnCycle() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addDependency(A.class, B.class);
+
+        assertFalse(graph.addDependencyIfAcyclic(B.class, A.class));
+        assertTrue(graph.addDependencyIfAcyclic(B.class, C.class));
+        assertEquals(Arrays.asList(C.class, B.class, A.class), graph.getTopologicalOrder());
+    }
+
+    @Test
+    public void testSubgraph() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addDependency(A.class, B.class);
+        graph.addDependency(C.class, D.class);
+
+        assertEquals(Arrays.asList(B.class, A.class), graph.getSubgraph(A.class).getTopologicalOrder());
+    }
+}
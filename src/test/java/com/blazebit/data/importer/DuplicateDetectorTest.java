@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import com.blazebit.data.importer.accessor.PropertyAccessor;
+import com.blazebit.data.importer.accessor.ReflectionPropertyAccessorFactory;
+import com.blazebit.data.importer.storage.InMemoryDataStorage;
+import java.io.Serializable;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class DuplicateDetectorTest {
+
+    @Test
+    public void testNaturalKey() throws Exception {
+        ReflectionPropertyAccessorFactory accessorFactory = new ReflectionPropertyAccessorFactory();
+        PropertyAccessor name = accessorFactory.getAccessor(Item.class, "name");
+        PropertyAccessor category = accessorFactory.getAccessor(Item.class, "category");
+        DuplicateDetector detector = new DuplicateDetector(Arrays.asList(name, category), new InMemoryDataStorage(), false);
+
+        assertTrue(detector.add(new Item("a", "x")));
+        assertTrue(detector.add(new Item("a", "y")));
+        assertTrue(detector.add(new Item("a", null)));
+        assertFalse(detector.add(new Item("a", "x")));
+        assertFalse(detector.add(new Item("a", null)));
+        assertEquals(3, detector.size());
+    }
+
+    @Test
+    public void testProxiesAreComparedByIdentifier() throws Exception {
+        InMemoryDataStorage storage = new InMemoryDataStorage() {
+
+            @Override
+            public synchronized Serializable getIdentifier(Serializable object) {
+                return ((Item) object).getId();
+            }
+        };
+        storage.register(Item.class, "id");
+        Item item = (Item) storage.saveObject(new Item("a", "x"));
+        Item proxy = new Item() {
+        };
+        proxy.setId(item.getId());
+
+        PropertyAccessor accessor = new ReflectionPropertyAccessorFactory().getAccessor(Order.class, "item");
+        DuplicateDetector detector = new DuplicateDetector(Arrays.asList(accessor), storage, false);
+
+        assertTrue(detector.add(new Order(item)));
+        assertFalse(detector.add(new Order(proxy)));
+    }
+
+    @Test
+    public void testOffHeapGrowth() throws Exception {
+        LongHashSet set = new LongHashSet(4, true);
+
+        for (long i = 1; i <= 10000; i++) {
+            assertTrue(set.add(i * 7919));
+        }
+        for (long i = 1; i <= 10000; i++) {
+            assertFalse(set.add(i * 7919));
+        }
+
+        assertEquals(10000, set.size());
+        assertTrue(set.contains(7919));
+        assertFalse(set.contains(7920));
+    }
+
+    public static class Order {
+
+        private Item item;
+
+        public Order() {
+        }
+
+        public Order(Item item) {
+            this.item = item;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+        public void setItem(Item item) {
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import com.blazebit.data.cfg.Configuration;
+import com.blazebit.data.cfg.DataClass;
+import com.blazebit.data.cfg.DataConfig;
+import com.blazebit.data.importer.storage.DataStorageException;
+import com.blazebit.data.importer.storage.InMemoryDataStorage;
+import com.blazebit.data.importer.storage.WriteBehindDataStorage;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class GenericDataImporterTest {
+
+    @Test
+    public void testIncrementalImport() throws Exception {
+        InMemoryDataStorage storage = new InMemoryDataStorage() {
+
+            @Override
+            public Serializable getByFields(Class clazz, Map<String, Serializable> valueMap) {
+                // Like JPADataStorage, which fails if nothing matches
+                throw new UnsupportedOperationException();
+            }
+        };
+        storage.register(Item.class, "id");
+
+        Item unchanged = new Item("a", "x");
+        unchanged.setNote("a");
+        storage.saveObject(unchanged);
+        Item changed = new Item("b", "x");
+        changed.setNote("b");
+        storage.saveObject(changed);
+
+        GenericDataImporter importer = new GenericDataImporter(storage, configuration("Item", "name", null));
+        importer.setIncremental(true);
+        DataProvider provider = provider(new String[]{"name", "category"}, new String[][]{{"a", "x"}, {"b", "y"}, {"c", "z"}});
+        importer.add(provider);
+        ImportStatistics statistics = importer.generateObjects().get(provider);
+
+        assertEquals(1, statistics.getRowsInserted());
+        assertEquals(1, statistics.getRowsUpdated());
+        assertEquals(1, statistics.getRowsUnchanged());
+        assertEquals(3, storage.size(Item.class));
+
+        assertEquals(Arrays.asList(changed), storage.getListByField(Item.class, "name", "b"));
+        assertEquals("y", changed.getCategory());
+        // Properties which are not imported are kept
+        assertEquals("b", changed.getNote());
+
+        Item inserted = (Item) storage.getListByField(Item.class, "name", "c").get(0);
+        assertEquals("z", inserted.getCategory());
+        assertNull(inserted.getNote());
+    }
+
+    @Test
+    public void testIncrementalImportPrefetchesExistingObjects() throws Exception {
+        final AtomicInteger queries = new AtomicInteger();
+        InMemoryDataStorage storage = new InMemoryDataStorage() {
+
+            @Override
+            public synchronized List<Serializable> getListByFields(Class clazz, Map<String, Serializable> valueMap) {
+                queries.incrementAndGet();
+                return super.getListByFields(clazz, valueMap);
+            }
+        };
+        storage.register(Item.class, "id");
+        storage.saveObject(new Item("a", "x"));
+        Item changed = (Item) storage.saveObject(new Item("b", "x"));
+
+        GenericDataImporter importer = new GenericDataImporter(storage, configuration("Item", "name", null));
+        importer.setIncremental(true);
+        DataProvider provider = provider(new String[]{"name", "category"}, new String[][]{{"a", "x"}, {"b", "y"}, {"c", "z"}, {"d", "z"}});
+        importer.add(provider);
+        ImportStatistics statistics = importer.generateObjects().get(provider);
+
+        assertEquals(1, queries.get());
+        assertEquals(2, statistics.getRowsInserted());
+        assertEquals(1, statistics.getRowsUpdated());
+        assertEquals(1, statistics.getRowsUnchanged());
+        assertEquals(4, storage.size(Item.class));
+        assertEquals("y", changed.getCategory());
+    }
+
+    @Test(timeout = 10000)
+    public void testSavingContinuesWhileTheWriterIsBusy() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        InMemoryDataStorage delegate = new InMemoryDataStorage() {
+
+            @Override
+            public Serializable saveObject(Serializable object) {
+                writing.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new DataStorageException("Interrupted", ex);
+                }
+
+                return super.saveObject(object);
+            }
+        };
+        delegate.register(Item.class, "id");
+        final AtomicInteger queued = new AtomicInteger();
+        WriteBehindDataStorage storage = new WriteBehindDataStorage(delegate, 10, 1) {
+
+            @Override
+            public Serializable saveObject(Serializable object) {
+                Serializable saved = super.saveObject(object);
+                queued.incrementAndGet();
+                return saved;
+            }
+        };
+
+        try {
+            final GenericDataImporter importer = new GenericDataImporter(storage, configuration("Item", null, null));
+            assertNotNull(importer.getIdentityIndex());
+            importer.add(provider(new String[]{"id", "name", "category"}, new String[][]{{"11", "a", "x"}, {"12", "b", "x"}, {"13", "c", "x"}, {"14", "d", "x"}, {"15", "e", "x"}}));
+            final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+
+            // Keeps the writer busy with a batch
+            storage.saveObject(new Item("z", "x"));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            Thread importThread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        importer.generateObjects();
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            });
+            importThread.start();
+
+            // The identity index must not wait for the first object to be written
+            while (queued.get() < 6) {
+                assertTrue(importThread.isAlive());
+                Thread.sleep(10);
+            }
+
+            release.countDown();
+            importThread.join();
+
+            assertEquals(Collections.emptyList(), failures);
+            assertEquals(6, delegate.size(Item.class));
+            assertEquals(Long.valueOf(13), importer.getIdentityIndex().get(Item.class, Long.valueOf(13)));
+        } finally {
+            release.countDown();
+            storage.close();
+        }
+    }
+
+    @Test
+    public void testMergeDuplicates() throws Exception {
+        InMemoryDataStorage storage = new InMemoryDataStorage();
+        storage.register(Item.class, "id");
+
+        GenericDataImporter importer = new GenericDataImporter(storage, configuration("Item", "name", "merge"));
+        DataProvider provider = provider(new String[]{"name", "category"}, new String[][]{{"a", "x"}, {"b", "x"}, {"a", "y"}});
+        importer.add(provider);
+        ImportStatistics statistics = importer.generateObjects().get(provider);
+
+        assertEquals(0, statistics.getRowsSkipped());
+        assertEquals(2, storage.size(Item.class));
+        assertEquals("y", ((Item) storage.getByField(Item.class, "name", "a")).getCategory());
+    }
+
+    private static Configuration configuration(String className, String naturalKey, String onDuplicate) {
+        final DataConfig dataConfig = new DataConfig();
+        dataConfig.setPackageName(Item.class.getPackage().getName());
+        dataConfig.setDateFormat("dd.MM.yyyy");
+        dataConfig.setCalendarFormat("dd.MM.yyyy");
+
+        DataClass dataClass = new DataClass();
+        dataClass.setName(className);
+        dataClass.setNaturalKey(naturalKey);
+        dataClass.setOnDuplicate(onDuplicate);
+        dataConfig.getDataClass().add(dataClass);
+
+        return new Configuration(null) {
+
+            @Override
+            protected DataConfig getDataImport() {
+                return dataConfig;
+            }
+        };
+    }
+
+    /**
+     * Returns a dataprovider for items with the given fields.
+     */
+    private static DataProvider provider(final String[] fieldNames, final String[][] rows) {
+        return new DataProvider() {
+
+            private int position;
+
+            @Override
+            public String getSimpleClassName() {
+                return Item.class.getSimpleName();
+            }
+
+            @Override
+            public String[] getFieldNames() {
+                return fieldNames;
+            }
+
+            @Override
+            public DataProvider.Entry next() {
+                if (position == rows.length) {
+                    return null;
+                }
+
+                final Map<String, String> fields = new HashMap<String, String>();
+                for (int i = 0; i < fieldNames.length; i++) {
+                    fields.put(fieldNames[i], rows[position][i]);
+                }
+
+                position++;
+
+                return new DataProvider.Entry() {
+
+                    @Override
+                    public Map<String, String> getSimpleFields() {
+                        return fields;
+                    }
+
+                    @Override
+                    public Map<String, Collection<DataProvider.Entry>> getComplexFields() {
+                        return Collections.emptyMap();
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.io.Serializable;
+
+/**
+ * A simple entity for the tests of the importer and the datastorages.
+ *
+ * @author Christian Beikov
+ */
+public class Item implements Serializable {
+
+    private Long id;
+    private String name;
+    private String category;
+    private String note;
+
+    public Item() {
+    }
+
+    public Item(String name, String category) {
+        this.name = name;
+        this.category = category;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class LookupCacheTest {
+
+    private static Map<String, Serializable> key(String value) {
+        return Collections.<String, Serializable>singletonMap("name", value);
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        LookupCache cache = new LookupCache();
+        cache.put(String.class, key("a"), "A");
+
+        assertEquals("A", cache.get(String.class, key("a")));
+        assertNull(cache.get(Integer.class, key("a")));
+        assertNull(cache.get(String.class, key("b")));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        LookupCache cache = new LookupCache(2, LookupCache.EvictionPolicy.LRU);
+        cache.put(String.class, key("a"), "A");
+        cache.put(String.class, key("b"), "B");
+        cache.get(String.class, key("a"));
+        cache.put(String.class, key("c"), "C");
+
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get(String.class, key("a")));
+        assertNull(cache.get(String.class, key("b")));
+    }
+
+    @Test
+    public void testFifoEviction() throws Exception {
+        LookupCache cache = new LookupCache(2, LookupCache.EvictionPolicy.FIFO);
+        cache.put(String.class, key("a"), "A");
+        cache.put(String.class, key("b"), "B");
+        cache.get(String.class, key("a"));
+        cache.put(String.class, key("c"), "C");
+
+        assertNull(cache.get(String.class, key("a")));
+        assertEquals("B", cache.get(String.class, key("b")));
+    }
+}
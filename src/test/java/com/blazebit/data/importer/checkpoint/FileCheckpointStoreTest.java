@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.checkpoint;
+
+import java.io.File;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class FileCheckpointStoreTest {
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = File.createTempFile("checkpoint", ".properties");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.setCompleted("Product");
+        checkpoint.setPosition("OrderLine", 20000, 2);
+
+        try {
+            store.save(checkpoint);
+            ImportCheckpoint loaded = store.load();
+
+            assertTrue(loaded.isCompleted("Product"));
+            assertFalse(loaded.isCompleted("OrderLine"));
+            assertEquals(20000, loaded.getRows("OrderLine"));
+            assertEquals(2, loaded.getChunk("OrderLine"));
+            assertEquals(0, loaded.getRows("Product"));
+        } finally {
+            store.clear();
+        }
+
+        assertFalse(file.exists());
+        assertTrue(store.load().isEmpty());
+    }
+}
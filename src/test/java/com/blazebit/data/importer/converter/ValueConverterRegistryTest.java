@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.converter;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class ValueConverterRegistryTest {
+
+    private final ValueConverterRegistry registry = new ValueConverterRegistry();
+
+    @Test
+    public void testPrimitivesUseWrapperConverters() throws Exception {
+        assertTrue(registry.getConverter(Integer.TYPE) instanceof IntegerConverter);
+        assertEquals(Long.valueOf(42), registry.getConverter(Long.TYPE).convert(" 42 "));
+        assertEquals(new BigDecimal("1.5"), registry.getConverter(BigDecimal.class).convert("1,5"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidNumber() throws Exception {
+        registry.getConverter(Integer.class).convert("abc");
+    }
+
+    @Test
+    public void testCalendarFallsBackToDatePattern() throws Exception {
+        Calendar withTime = (Calendar) registry.getConverter(Calendar.class).convert("24.12.2011 18:30:00");
+        Calendar withoutTime = (Calendar) registry.getConverter(Calendar.class).convert("24.12.2011");
+
+        assertEquals(new GregorianCalendar(2011, Calendar.DECEMBER, 24, 18, 30, 0).getTime(), withTime.getTime());
+        assertEquals(new GregorianCalendar(2011, Calendar.DECEMBER, 24).getTime(), withoutTime.getTime());
+    }
+
+    @Test
+    public void testRegisteredConverterTakesPrecedence() throws Exception {
+        ValueConverter<Integer> converter = new ValueConverter<Integer>() {
+
+            @Override
+            public Integer convert(String value) {
+                return Integer.valueOf(value.length());
+            }
+        };
+        registry.register(Integer.class, converter);
+
+        assertSame(converter, registry.getConverter(Integer.TYPE));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class InMemoryDataStorageTest {
+
+    private static Item item(String name, String category) {
+        Item item = new Item();
+        item.setName(name);
+        item.setCategory(category);
+        return item;
+    }
+
+    @Test
+    public void testGeneratedIds() throws Exception {
+        InMemoryDataStorage storage = new InMemoryDataStorage();
+        storage.register(Item.class, "id");
+        Item a = item("a", "x");
+        a.setId(5L);
+        storage.saveObject(a);
+        Item b = (Item) storage.saveObject(item("b", "x"));
+
+        assertEquals(Long.valueOf(6), b.getId());
+        assertSame(a, storage.getById(Item.class, 5L));
+        assertSame(b, storage.getReference(Item.class, 6L));
+        assertEquals(Long.class, storage.getIdentifierType(Item.class));
+        assertTrue(storage.isManaged(Item.class));
+        assertFalse(storage.isManaged(String.class));
+    }
+
+    @Test
+    public void testLookups() throws Exception {
+        InMemoryDataStorage storage = new InMemoryDataStorage();
+        storage.register(Item.class, "id");
+        Item a = (Item) storage.saveObject(item("a", "x"));
+        Item b = (Item) storage.saveObject(item("b", "x"));
+
+        assertSame(a, storage.getByField(Item.class, "name", "a"));
+        assertEquals(2, storage.getListByField(Item.class, "category", "x").size());
+        assertEquals(Arrays.asList(a, b), storage.getListByField(Item.class, "name", (Serializable) Arrays.asList("a", "b", "c")));
+
+        // The index is maintained for objects which are saved again
+        Item c = (Item) storage.saveObject(item("c", "y"));
+        b.setCategory("y");
+        storage.saveObject(b);
+        Map<String, Serializable> valueMap = new HashMap<String, Serializable>();
+        valueMap.put("name", "b");
+        valueMap.put("category", "y");
+
+        assertSame(b, storage.getByFields(Item.class, valueMap));
+        assertEquals(Arrays.asList(a), storage.getListByField(Item.class, "category", "x"));
+        assertEquals(Arrays.asList(c, b), storage.getListByField(Item.class, "category", "y"));
+        assertNull(storage.getByField(Item.class, "name", "d"));
+    }
+
+    public static class Item implements Serializable {
+
+        private Long id;
+        private String name;
+        private String category;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public void setCategory(String category) {
+            this.category = category;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.Item;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.Metamodel;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class JPADataStorageTest {
+
+    @Test
+    public void testPersistSavesDetachedObjectsAgain() throws Exception {
+        PersistenceContext context = new PersistenceContext();
+        JPADataStorage storage = new JPADataStorage(context.getEntityManager());
+        storage.setSaveStrategy(JPADataStorage.SaveStrategy.PERSIST);
+
+        Item item = new Item("a", "x");
+        assertSame(item, storage.saveObject(item));
+        assertEquals(Long.valueOf(1), item.getId());
+
+        // Clears the persistence context, so the item is detached
+        storage.flush();
+        item.setCategory("y");
+        Item saved = (Item) storage.saveObject(item);
+
+        assertEquals(Long.valueOf(1), saved.getId());
+        assertEquals("y", saved.getCategory());
+        assertEquals(1, context.persists);
+        assertEquals(1, context.merges);
+    }
+
+    /**
+     * A persistence context for items which fails like Hibernate when a
+     * detached object is persisted.
+     */
+    private static class PersistenceContext implements InvocationHandler {
+
+        private final Map<Object, Boolean> managed = new IdentityHashMap<Object, Boolean>();
+        private long nextId = 1;
+        private int persists;
+        private int merges;
+
+        public EntityManager getEntityManager() {
+            return proxy(EntityManager.class);
+        }
+
+        private <T> T proxy(Class<T> clazz) {
+            return clazz.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{clazz}, this));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if ("getEntityManagerFactory".equals(name)) {
+                return proxy(EntityManagerFactory.class);
+            } else if ("getMetamodel".equals(name)) {
+                return proxy(Metamodel.class);
+            } else if ("getEntities".equals(name)) {
+                return Collections.emptySet();
+            } else if ("getProperties".equals(name)) {
+                return Collections.emptyMap();
+            } else if ("getPersistenceUnitUtil".equals(name)) {
+                return proxy(PersistenceUnitUtil.class);
+            } else if ("getIdentifier".equals(name)) {
+                return ((Item) args[0]).getId();
+            } else if ("contains".equals(name)) {
+                return managed.containsKey(args[0]);
+            } else if ("persist".equals(name)) {
+                Item item = (Item) args[0];
+
+                if (item.getId() != null && !managed.containsKey(item)) {
+                    throw new PersistenceException("detached entity passed to persist");
+                }
+
+                persists++;
+                item.setId(nextId++);
+                managed.put(item, Boolean.TRUE);
+                return null;
+            } else if ("merge".equals(name)) {
+                Item item = (Item) args[0];
+                Item copy = new Item(item.getName(), item.getCategory());
+                copy.setId(item.getId());
+                merges++;
+                managed.put(copy, Boolean.TRUE);
+                return copy;
+            } else if ("clear".equals(name)) {
+                managed.clear();
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011 Blazebit
+ */
+package com.blazebit.data.importer.storage;
+
+import com.blazebit.data.importer.Item;
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Christian Beikov
+ */
+public class WriteBehindDataStorageTest {
+
+    @Test
+    public void testQueuedObjectsAreVisible() throws Exception {
+        InMemoryDataStorage delegate = new InMemoryDataStorage();
+        delegate.register(Item.class, "id");
+        WriteBehindDataStorage storage = new WriteBehindDataStorage(delegate, 2, 1);
+
+        try {
+            Item last = null;
+
+            for (int i = 0; i < 10; i++) {
+                last = new Item("item" + i, "x");
+                assertSame(last, storage.saveObject(last));
+            }
+
+            assertEquals(Long.valueOf(10), storage.getIdentifier(last));
+            assertEquals(10, storage.getListByField(Item.class, "category", "x").size());
+            assertSame(last, storage.getByField(Item.class, "name", "item9"));
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSavingBlocksOnlyWhenTheQueueIsFull() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        InMemoryDataStorage delegate = new InMemoryDataStorage() {
+
+            @Override
+            public synchronized Serializable saveObject(Serializable object) {
+                writing.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new DataStorageException("Interrupted", ex);
+                }
+
+                return super.saveObject(object);
+            }
+        };
+        delegate.register(Item.class, "id");
+        final WriteBehindDataStorage storage = new WriteBehindDataStorage(delegate, 2, 1);
+
+        try {
+            storage.saveObject(new Item("a", "x"));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            // The writer is busy, but the queue has room
+            storage.saveObject(new Item("b", "x"));
+            storage.saveObject(new Item("c", "x"));
+
+            Thread saver = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    storage.saveObject(new Item("d", "x"));
+                }
+            });
+            saver.start();
+
+            while (saver.getState() != Thread.State.WAITING) {
+                assertTrue(saver.isAlive());
+                Thread.sleep(10);
+            }
+
+            release.countDown();
+            saver.join();
+            assertEquals(4, storage.getListByField(Item.class, "category", "x").size());
+        } finally {
+            release.countDown();
+            storage.close();
+        }
+    }
+
+    @Test
+    public void testWriterFailureIsThrown() throws Exception {
+        InMemoryDataStorage delegate = new InMemoryDataStorage() {
+
+            @Override
+            public synchronized Serializable saveObject(Serializable object) {
+                if ("b".equals(((Item) object).getName())) {
+                    throw new DataStorageException("Could not save b");
+                }
+
+                return super.saveObject(object);
+            }
+        };
+        delegate.register(Item.class, "id");
+        WriteBehindDataStorage storage = new WriteBehindDataStorage(delegate, 2, 1);
+
+        storage.saveObject(new Item("a", "x"));
+        storage.saveObject(new Item("b", "x"));
+
+        try {
+            storage.flush();
+            fail("Expected the failure of the writer");
+        } catch (DataStorageException ex) {
+            assertEquals("Could not save b", ex.getCause().getMessage());
+        }
+
+        try {
+            storage.saveObject(new Item("c", "x"));
+            fail("Expected the failure of the writer");
+        } catch (DataStorageException ex) {
+            assertEquals("Could not save b", ex.getCause().getMessage());
+        }
+
+        try {
+            storage.close();
+            fail("Expected the failure of the writer");
+        } catch (DataStorageException ex) {
+            assertEquals("Could not save b", ex.getCause().getMessage());
+        }
+    }
+}